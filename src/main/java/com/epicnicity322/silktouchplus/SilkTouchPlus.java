@@ -33,20 +33,29 @@ import com.epicnicity322.silktouchplus.command.ReloadCommand;
 import com.epicnicity322.silktouchplus.hook.DecentHologramsHook;
 import com.epicnicity322.silktouchplus.hook.HolographicDisplaysHook;
 import com.epicnicity322.silktouchplus.listener.*;
+import com.epicnicity322.silktouchplus.packet.PacketAdapter;
+import com.epicnicity322.silktouchplus.packet.PacketHologramHandler;
+import com.epicnicity322.silktouchplus.render.SpawnerRenderer;
 import com.epicnicity322.silktouchplus.util.HologramHandler;
+import com.epicnicity322.silktouchplus.util.HologramUpdater;
+import com.epicnicity322.silktouchplus.util.MessageTemplate;
 import com.epicnicity322.silktouchplus.util.SilkTouchPlusUtil;
+import com.epicnicity322.silktouchplus.util.SpawnPolicy;
+import com.epicnicity322.silktouchplus.util.SpawnerHealthCache;
+import com.epicnicity322.silktouchplus.util.SpawnerItemFactory;
+import com.epicnicity322.silktouchplus.util.SpawnerMobRegistry;
+import com.epicnicity322.silktouchplus.util.VirtualLootBuffer;
 import com.epicnicity322.yamlhandler.Configuration;
+import com.epicnicity322.yamlhandler.ConfigurationSection;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
+import org.bukkit.World;
 import org.bukkit.block.CreatureSpawner;
 import org.bukkit.command.PluginCommand;
-import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
 import org.bukkit.event.HandlerList;
-import org.bukkit.inventory.ItemFlag;
 import org.bukkit.inventory.ItemStack;
-import org.bukkit.inventory.meta.ItemMeta;
-import org.bukkit.persistence.PersistentDataType;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
@@ -55,9 +64,9 @@ import org.jetbrains.annotations.Nullable;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public final class SilkTouchPlus extends JavaPlugin {
     private static final @NotNull Path folder = Paths.get("plugins", "SilkTouchPlus");
@@ -66,6 +75,9 @@ public final class SilkTouchPlus extends JavaPlugin {
             Configurations.langEN_US.getDefaultConfiguration());
     private static @Nullable SilkTouchPlus instance;
     private static @Nullable HologramHandler hologramHandler;
+    private static @Nullable HologramUpdater hologramUpdater;
+    private static @Nullable PacketAdapter packetAdapter;
+    private static final @NotNull ConcurrentHashMap<String, MessageTemplate> templates = new ConcurrentHashMap<>();
 
     static {
         lang.addLanguage("EN_US", Configurations.langEN_US);
@@ -74,16 +86,30 @@ public final class SilkTouchPlus extends JavaPlugin {
 
     public final @NotNull NamespacedKey spawnerType = new NamespacedKey(this, "spawner_type");
     public final @NotNull NamespacedKey spawnerHealth = new NamespacedKey(this, "spawner_health");
+    public final @NotNull NamespacedKey spawnerStack = new NamespacedKey(this, "spawner_stack");
     public final @NotNull NamespacedKey repairLootEntity = new NamespacedKey(this, "repair_loot_entity");
     public final @NotNull NamespacedKey repairLoot = new NamespacedKey(this, "repair_loot");
     public final @NotNull NamespacedKey spawnerSpecialRepairItem = new NamespacedKey(this, "spawner_special_repair_item");
     public final @NotNull NamespacedKey hologramEnabled = new NamespacedKey(this, "hologram_enabled");
+    public final @NotNull NamespacedKey virtualLootItems = new NamespacedKey(this, "virtual_loot_items");
+    public final @NotNull NamespacedKey virtualLootExperience = new NamespacedKey(this, "virtual_loot_experience");
+    private final @NotNull SpawnerHealthCache healthCache = new SpawnerHealthCache(spawnerHealth, spawnerStack);
+    private final @NotNull VirtualLootBuffer lootBuffer = new VirtualLootBuffer(virtualLootItems, virtualLootExperience, getLogger());
+    private final @NotNull SpawnerMobRegistry spawnerMobs = new SpawnerMobRegistry(repairLootEntity);
+    private final @NotNull SpawnerItemFactory spawnerItems = new SpawnerItemFactory(spawnerType, spawnerHealth);
     private final @NotNull SpawnerBlockListener spawnerBreak = new SpawnerBlockListener(this);
     private final @NotNull SilkTouchListener spawnerInventory = new SilkTouchListener(spawnerBreak);
-    private final @NotNull SpawnerSpawnListener spawnerSpawn = new SpawnerSpawnListener(this);
+    private final @NotNull MobStackListener mobStack = new MobStackListener(this);
+    private final @NotNull SpawnerSpawnListener spawnerSpawn = new SpawnerSpawnListener(this, mobStack);
     private final @NotNull SpawnerClickListener spawnerClick = new SpawnerClickListener(this);
     private final @NotNull SpawnerEntityDeathListener spawnerEntityDeath = new SpawnerEntityDeathListener(this, spawnerClick);
+    private final @NotNull VirtualSpawnListener virtualSpawn = new VirtualSpawnListener(this, spawnerEntityDeath);
+    private final @NotNull SpawnerChunkListener spawnerChunk = new SpawnerChunkListener(this);
+    private final @NotNull SpawnerMobChunkListener spawnerMobChunk = new SpawnerMobChunkListener(this);
+    private final @NotNull PlayerViewListener playerView = new PlayerViewListener(SpawnerSpawnListener.getRenderer());
     private @Nullable BukkitTask renderTask;
+    private boolean hologramsHooked = false;
+    private boolean entityLoadEvents = false;
 
     public SilkTouchPlus() {
         instance = this;
@@ -97,39 +123,67 @@ public final class SilkTouchPlus extends JavaPlugin {
     public static @NotNull ItemStack getSpawner(@NotNull CreatureSpawner spawner) {
         if (instance == null)
             throw new UnsupportedOperationException("Cannot create a spawner with SilkTouchPlus unloaded.");
-        return newSpawner(spawner.getSpawnedType(), spawner.getPersistentDataContainer().getOrDefault(instance.spawnerHealth, PersistentDataType.DOUBLE, 1.0));
+        return newSpawner(spawner.getSpawnedType(), instance.healthCache.getHealth(spawner));
     }
 
     public static @NotNull ItemStack newSpawner(@NotNull EntityType type, double health) {
         if (instance == null)
             throw new UnsupportedOperationException("Cannot create a spawner with SilkTouchPlus unloaded.");
-        Configuration config = Configurations.config.getConfiguration();
-        ItemStack item = new ItemStack(ObjectUtils.getOrDefault(Material.getMaterial(config.getString("Drop.Spawner Item.Material").orElse("SPAWNER")), Material.SPAWNER));
-        ItemMeta meta = item.getItemMeta();
-
-        if (meta == null) {
-            item = new ItemStack(Material.SPAWNER);
-            meta = Objects.requireNonNull(item.getItemMeta());
-        }
+        return instance.spawnerItems.create(type, health);
+    }
 
-        meta.getPersistentDataContainer().set(instance.spawnerType, PersistentDataType.STRING, type.name());
-        meta.getPersistentDataContainer().set(instance.spawnerHealth, PersistentDataType.DOUBLE, health);
-        if (config.getBoolean("Drop.Spawner Item.Glowing").orElse(false)) {
-            meta.addEnchant(Enchantment.DURABILITY, 1, true);
-        }
-        meta.setDisplayName(lang.getColored("Drop.Spawner Item.Display Name").replace("<type>", type.name()));
-        meta.setLore(Arrays.asList(SilkTouchPlusUtil.separateLines(lang.getColored("Drop.Spawner Item.Lore")
-                .replace("<type>", type.name()).replace("<health>", Double.toString(health))
-                .replace("<health_percentage>", SilkTouchPlusUtil.formatHealth(health)))));
-        meta.addItemFlags(ItemFlag.values());
-        item.setItemMeta(meta);
-        return item;
+    /**
+     * Gets the colored language entry compiled into a template. The placeholders are {@literal <type>},
+     * {@literal <health>} and {@literal <health_percentage>}, with arguments given in this order.
+     *
+     * @param key The key of the language entry.
+     * @return The compiled template, which is compiled again when the plugin reloads.
+     */
+    public static @NotNull MessageTemplate getTemplate(@NotNull String key) {
+        return templates.computeIfAbsent(key, k -> MessageTemplate.compile(lang.getColored(k), "<type>", "<health>", "<health_percentage>"));
     }
 
     public static @Nullable HologramHandler getHologramHandler() {
         return hologramHandler;
     }
 
+    /**
+     * @return The updater that should be used to show and update spawner holograms, or null if no hologram plugin was
+     * hooked.
+     */
+    public static @Nullable HologramUpdater getHologramUpdater() {
+        return hologramUpdater;
+    }
+
+    /**
+     * @return The adapter for sending packets in this server version, or null if this version is not supported.
+     */
+    public static @Nullable PacketAdapter getPacketAdapter() {
+        return packetAdapter;
+    }
+
+    /**
+     * @return The cache holding the health of loaded spawners, which should be used instead of reading and writing the
+     * spawner's persistent data container.
+     */
+    public @NotNull SpawnerHealthCache getHealthCache() {
+        return healthCache;
+    }
+
+    /**
+     * @return The registry of the loaded mobs that were spawned by spawners.
+     */
+    public @NotNull SpawnerMobRegistry getSpawnerMobs() {
+        return spawnerMobs;
+    }
+
+    /**
+     * @return The loot produced by virtual spawns, kept in each spawner until a player collects it.
+     */
+    public @NotNull VirtualLootBuffer getLootBuffer() {
+        return lootBuffer;
+    }
+
     /**
      * Reloads configurations and listeners of SilkTouchPlus.
      *
@@ -150,21 +204,80 @@ public final class SilkTouchPlus extends JavaPlugin {
 
         Configuration config = Configurations.config.getConfiguration();
 
+        templates.clear();
+        for (String key : new String[]{"Spawner Hologram", "Drop.Spawner Item.Display Name", "Drop.Spawner Item.Lore",
+                "Repair.Loot Lore", "Repair.Repaired", "Repair.Special Repair Item.Lore", "Repair.Special Repair Item.Drop"}) {
+            getTemplate(key);
+        }
+
         SilkTouchPlusUtil.setSeparatorInHealthFormat(config.getString("Health.Decimal Separator").orElse(".").charAt(0));
-        if (hologramHandler != null) {
-            hologramHandler.clear();
-            hologramHandler.setEnabled(config.getBoolean("Holograms").orElse(true));
+        instance.spawnerItems.reload(ObjectUtils.getOrDefault(Material.getMaterial(config.getString("Drop.Spawner Item.Material").orElse("SPAWNER")), Material.SPAWNER),
+                config.getBoolean("Drop.Spawner Item.Glowing").orElse(false), config.getNumber("Drop.Spawner Item.Health Buckets").orElse(0).intValue());
+        if (!instance.hologramsHooked) {
+            instance.hookHolograms(config.getString("Hologram Handler").orElse("AUTO").toUpperCase(Locale.ROOT));
+            instance.hologramsHooked = true;
+        }
+        if (hologramUpdater != null) {
+            hologramUpdater.setRefreshInterval(config.getNumber("Hologram Refresh Interval").orElse(20).intValue());
+            hologramUpdater.setViewDistance(config.getNumber("Hologram View Distance").orElse(16).intValue());
+            hologramUpdater.getHandler().setEnabled(config.getBoolean("Holograms").orElse(true));
         }
         instance.loadListeners();
         if (instance.renderTask != null) {
             instance.renderTask.cancel();
         }
-        if (config.getBoolean("Health.Show Damage Animation").orElse(false)) {
-            instance.renderTask = instance.getServer().getScheduler().runTaskTimerAsynchronously(instance, SpawnerSpawnListener::renderHealth, 0, 300);
+        if (packetAdapter != null && config.getBoolean("Health.Show Damage Animation").orElse(false)) {
+            SpawnerRenderer renderer = SpawnerSpawnListener.getRenderer();
+            renderer.setRenderRadius(config.getNumber("Health.Damage Animation Radius").orElse(0).intValue());
+            renderer.setBudget(config.getNumber("Health.Damage Animation Budget.Microseconds Per Tick").orElse(1000).intValue(),
+                    config.getNumber("Health.Damage Animation Budget.Packets Per Tick").orElse(500).intValue());
+            renderer.getViews().clear();
+            for (Player player : instance.getServer().getOnlinePlayers()) renderer.getViews().update(player, player.getLocation());
+            instance.renderTask = instance.getServer().getScheduler().runTaskTimerAsynchronously(instance, SpawnerSpawnListener::renderHealth, 0, 1);
         }
+        // Holograms were cleared, and spawners already in loaded chunks must be registered again.
+        instance.spawnerChunk.scanLoadedChunks();
         return exceptions.isEmpty();
     }
 
+    /**
+     * Selects the hologram handler. Hologram plugins are preferred over packet holograms when the choice is AUTO.
+     *
+     * @param choice AUTO, DECENTHOLOGRAMS, HOLOGRAPHICDISPLAYS or PACKETS.
+     */
+    private void hookHolograms(@NotNull String choice) {
+        PluginManager manager = getServer().getPluginManager();
+        boolean auto = choice.equals("AUTO");
+
+        if ((auto || choice.equals("DECENTHOLOGRAMS")) && manager.getPlugin("DecentHolograms") != null) {
+            try {
+                hologramHandler = new DecentHologramsHook();
+                logger.log("DecentHolograms was found and hooked.");
+            } catch (Throwable t) {
+                logger.log("Could not hook to DecentHolograms:", ConsoleLogger.Level.WARN);
+                t.printStackTrace();
+            }
+        }
+        if (hologramHandler == null && (auto || choice.equals("HOLOGRAPHICDISPLAYS")) && manager.getPlugin("HolographicDisplays") != null) {
+            try {
+                hologramHandler = new HolographicDisplaysHook(this);
+                logger.log("HolographicDisplays was found and hooked.");
+            } catch (Throwable t) {
+                logger.log("Could not hook to HolographicDisplays:", ConsoleLogger.Level.WARN);
+                t.printStackTrace();
+            }
+        }
+        if (hologramHandler == null && (auto || choice.equals("PACKETS"))) {
+            if (packetAdapter != null && packetAdapter.supportsVirtualEntities()) {
+                hologramHandler = new PacketHologramHandler(packetAdapter);
+                logger.log("Using packet holograms.");
+            } else if (!auto) {
+                logger.log("Packet holograms are not supported in this version.", ConsoleLogger.Level.WARN);
+            }
+        }
+        if (hologramHandler != null) hologramUpdater = new HologramUpdater(hologramHandler, hologramEnabled);
+    }
+
     private void loadListeners() {
         HandlerList.unregisterAll(this);
         PluginManager manager = getServer().getPluginManager();
@@ -172,6 +285,7 @@ public final class SilkTouchPlus extends JavaPlugin {
 
         spawnerBreak.setBreakTools(config.getCollection("Drop.Break Tools", Object::toString));
         spawnerBreak.setSilkTouchLevel(config.getNumber("Drop.Silk Touch Level").orElse(2).intValue());
+        spawnerBreak.setStacking(config.getBoolean("Stacking.Enabled").orElse(false), config.getNumber("Stacking.Max Stack Size").orElse(16).intValue());
         manager.registerEvents(spawnerBreak, this);
 
         spawnerInventory.setAllowSilkTouchBookCombining(config.getBoolean("Silk Touch Two.Allow Silk Touch Book Combining").orElse(true));
@@ -180,16 +294,26 @@ public final class SilkTouchPlus extends JavaPlugin {
             manager.registerEvents(spawnerInventory, this);
         }
 
-        spawnerSpawn.setSpawnWhitelist(config.getCollection("Spawn Whitelist", obj -> {
-            try {
-                return EntityType.valueOf(obj.toString());
-            } catch (IllegalArgumentException e) {
-                logger.log("Unknown entity type '" + obj + "' from Spawn Whitelist setting.");
-                return null;
-            }
-        }));
-        spawnerSpawn.setSpawnDamage(config.getNumber("Health.Spawn Damage").orElse(0.0005).doubleValue());
-        manager.registerEvents(spawnerSpawn, this);
+        SpawnPolicy.Builder spawnPolicy = new SpawnPolicy.Builder();
+        spawnPolicy.defaults().setWhitelist(getTypes(config, "Spawn Whitelist"))
+                .setBlacklist(getTypes(config, "Spawn Blacklist"))
+                .setSpawnDamage(config.getNumber("Health.Spawn Damage").orElse(0.0005).doubleValue())
+                .setSpawnDamages(getTypeDamages(config.getConfigurationSection("Health.Spawn Damage Per Type")));
+        ConfigurationSection worldOverrides = config.getConfigurationSection("World Overrides");
+        if (worldOverrides != null) {
+            worldOverrides.getNodes().forEach((world, node) -> {
+                if (!(node instanceof ConfigurationSection)) return;
+                ConfigurationSection section = (ConfigurationSection) node;
+                SpawnPolicy.Rules rules = spawnPolicy.world(world);
+                Map<String, Object> nodes = section.getNodes();
+
+                if (nodes.containsKey("Spawn Whitelist")) rules.setWhitelist(getTypes(section, "Spawn Whitelist"));
+                if (nodes.containsKey("Spawn Blacklist")) rules.setBlacklist(getTypes(section, "Spawn Blacklist"));
+                section.getNumber("Spawn Damage").ifPresent(damage -> rules.setSpawnDamage(damage.doubleValue()));
+                rules.setSpawnDamages(getTypeDamages(section.getConfigurationSection("Spawn Damage Per Type")));
+            });
+        }
+        spawnerSpawn.setSpawnPolicy(spawnPolicy.build());
 
         spawnerClick.setLootRepairAmount(config.getNumber("Health.Loot Repair Amount").orElse(0.0010).doubleValue());
         spawnerClick.setSpecialRepairAmount(config.getNumber("Health.Special Repair Item.Repair Amount").orElse(2.0).doubleValue());
@@ -200,7 +324,59 @@ public final class SilkTouchPlus extends JavaPlugin {
                 config.getBoolean("Health.Special Repair Item.Glowing").orElse(true));
         spawnerEntityDeath.setDropChance(config.getNumber("Health.Special Repair Item.Drop Chance").orElse(0.01).doubleValue());
         spawnerEntityDeath.setOnlySpawnerLootCanRepair(config.getBoolean("Health.Only Spawner Loot Can Repair").orElse(true));
+        spawnerEntityDeath.loadRepairLoot();
+        spawnerMobs.setTimeToLive(TimeUnit.MINUTES.toMillis(config.getNumber("Health.Spawner Mob Memory").orElse(60).longValue()));
         manager.registerEvents(spawnerEntityDeath, this);
+
+        List<EntityType> virtualTypes = getTypes(config, "Virtual Spawning.Types");
+        virtualSpawn.setTypes(virtualTypes);
+        lootBuffer.setMaxItems(config.getNumber("Virtual Spawning.Max Items").orElse(1728).intValue());
+        manager.registerEvents(virtualSpawn, this);
+
+        List<EntityType> stackTypes = getTypes(config, "Mob Stacking.Types");
+        // Virtual spawning types don't spawn mobs to be stacked.
+        stackTypes.removeAll(virtualTypes);
+        mobStack.setTypes(stackTypes);
+        mobStack.setRadius(config.getNumber("Mob Stacking.Radius").orElse(8).doubleValue());
+        mobStack.setMaxStackSize(config.getNumber("Mob Stacking.Max Stack Size").orElse(64).intValue());
+        mobStack.setKillWholeStack(config.getBoolean("Mob Stacking.Kill Whole Stack").orElse(false));
+        mobStack.loadName();
+        manager.registerEvents(mobStack, this);
+        // Registered after virtual spawning and mob stacking, so its HIGHEST handler runs after theirs.
+        manager.registerEvents(spawnerSpawn, this);
+
+        manager.registerEvents(spawnerChunk, this);
+        // Entities load separately from chunks since 1.17, and the events for it don't exist before that.
+        if (entityLoadEvents) manager.registerEvents(spawnerMobChunk, this);
+        else spawnerChunk.setEntitiesWithChunks(true);
+        manager.registerEvents(playerView, this);
+    }
+
+    private static @NotNull List<EntityType> getTypes(@NotNull ConfigurationSection section, @NotNull String path) {
+        List<EntityType> types = new ArrayList<>(section.getCollection(path, obj -> {
+            try {
+                return EntityType.valueOf(obj.toString());
+            } catch (IllegalArgumentException e) {
+                logger.log("Unknown entity type '" + obj + "' from " + path + " setting.");
+                return null;
+            }
+        }));
+        types.removeIf(Objects::isNull);
+        return types;
+    }
+
+    private static @NotNull EnumMap<EntityType, Double> getTypeDamages(@Nullable ConfigurationSection section) {
+        EnumMap<EntityType, Double> damages = new EnumMap<>(EntityType.class);
+        if (section == null) return damages;
+
+        section.getNodes().forEach((type, damage) -> {
+            try {
+                damages.put(EntityType.valueOf(type), Double.parseDouble(String.valueOf(damage)));
+            } catch (IllegalArgumentException e) {
+                logger.log("Invalid spawn damage '" + type + ": " + damage + "' from Spawn Damage Per Type setting.");
+            }
+        });
+        return damages;
     }
 
     @Override
@@ -213,6 +389,8 @@ public final class SilkTouchPlus extends JavaPlugin {
             return;
         }
 
+        entityLoadEvents = platform.compareTo(new Version("1.17")) >= 0;
+
         PluginCommand mainCommand = getCommand("silktouchplus");
 
         if (mainCommand != null) {
@@ -232,27 +410,27 @@ public final class SilkTouchPlus extends JavaPlugin {
                     (label, sender, args) -> lang.send(sender, lang.get("General.Unknown Command").replace("<label>", label)));
         }
 
-        if (getServer().getPluginManager().getPlugin("DecentHolograms") != null) {
-            try {
-                hologramHandler = new DecentHologramsHook(this);
-                logger.log("DecentHolograms was found and hooked.");
-            } catch (Throwable t) {
-                logger.log("Could not hook to DecentHolograms:", ConsoleLogger.Level.WARN);
-                t.printStackTrace();
-            }
-        } else if (getServer().getPluginManager().getPlugin("HolographicDisplays") != null) {
-            try {
-                hologramHandler = new HolographicDisplaysHook(this);
-                logger.log("HolographicDisplays was found and hooked.");
-            } catch (Throwable t) {
-                logger.log("Could not hook to HolographicDisplays:", ConsoleLogger.Level.WARN);
-                t.printStackTrace();
-            }
+
+        try {
+            packetAdapter = PacketAdapter.create();
+            SpawnerSpawnListener.getRenderer().setPacketAdapter(packetAdapter);
+        } catch (UnsupportedOperationException e) {
+            logger.log("Damage animation is not supported in version " + platform + ":", ConsoleLogger.Level.WARN);
+            e.printStackTrace();
         }
 
+        getServer().getScheduler().runTaskTimer(this, spawnerSpawn::applySpawnDamage, 1, 1);
         reload();
     }
 
+    @Override
+    public void onDisable() {
+        healthCache.flushAll();
+        lootBuffer.flushAll();
+        // Mobs that are still alive are saved with the worlds after the plugin disables.
+        for (World world : getServer().getWorlds()) spawnerMobs.persist(world.getEntities());
+    }
+
     private static final class Configurations {
         private static final @NotNull ConfigurationLoader loader = new ConfigurationLoader();
         private static final @NotNull ConfigurationHolder config = new ConfigurationHolder(folder.resolve("config.yml"), "" +
@@ -269,6 +447,17 @@ public final class SilkTouchPlus extends JavaPlugin {
                 "  Spawner Item:\n" +
                 "    Material: 'SPAWNER' # Can have different material types.\n" +
                 "    Glowing: true\n" +
+                "    # Rounds the health of dropped spawners to this many parts, so items can be reused instead of created\n" +
+                "    #every time. For example, 1000 rounds to 0.1%. Set to 0 to keep the exact health.\n" +
+                "    Health Buckets: 0\n" +
+                "\n" +
+                "# Placing a spawner item on a spawner of the same type adds it to the spawner's stack, instead of placing a new\n" +
+                "#block. A stack spawns one mob per spawner at once and its health is shared between the spawners. Sneak to\n" +
+                "#place the spawner normally. Breaking a stack removes one spawner at a time.\n" +
+                "# Only players with permission silktouchplus.stack are allowed.\n" +
+                "Stacking:\n" +
+                "  Enabled: false\n" +
+                "  Max Stack Size: 16\n" +
                 "\n" +
                 "Silk Touch Two:\n" +
                 "  # Prevents items that have silk touch greater than 1 from being repaired.\n" +
@@ -281,6 +470,14 @@ public final class SilkTouchPlus extends JavaPlugin {
                 "# Only player with permission silktouchplus.hologram can crouch and right-click to toggle.\n" +
                 "# Compatible with: HolographicDisplays and DecentHolograms.\n" +
                 "Holograms: true\n" +
+                "# What shows the holograms: AUTO, DECENTHOLOGRAMS, HOLOGRAPHICDISPLAYS or PACKETS.\n" +
+                "# AUTO uses a hologram plugin if one is installed, otherwise holograms are sent as packets, without any\n" +
+                "#entity on the server. Requires a restart to change.\n" +
+                "Hologram Handler: AUTO\n" +
+                "# The minimum time in ticks between two updates of the same hologram.\n" +
+                "Hologram Refresh Interval: 20\n" +
+                "# Holograms are only created and shown to players within this distance in blocks of the spawner.\n" +
+                "Hologram View Distance: 16\n" +
                 "\n" +
                 "# A new spawner has 1.0 health max. It gets damage every time a mob is spawned, and can be fed later to\n" +
                 "#recover its health back to 1.0.\n" +
@@ -288,9 +485,20 @@ public final class SilkTouchPlus extends JavaPlugin {
                 "Health:\n" +
                 "  # The damage the spawner takes every time a mob spawns from it.\n" +
                 "  Spawn Damage: 0.0005 # About 5000 mob spawns before it's fully depleted.\n" +
+                "  # The damage of specific mob types, overriding the one above.\n" +
+                "  Spawn Damage Per Type:\n" +
+                "    #BLAZE: 0.001\n" +
                 "  # Makes the block look like it's broken according to the spawner's health.\n" +
                 "  # This option can be laggy depending on the amount of spawners and players you have in your server!\n" +
                 "  Show Damage Animation: true\n" +
+                "  # The radius in chunks around players where the damage animation is shown. Set to 0 to use the server's\n" +
+                "  #view distance.\n" +
+                "  Damage Animation Radius: 0\n" +
+                "  # The animations are sent to a few players every tick, taking longer to go through all players the more\n" +
+                "  #spawners there are. These limit how much time and packets can be spent sending them each tick.\n" +
+                "  Damage Animation Budget:\n" +
+                "    Microseconds Per Tick: 1000\n" +
+                "    Packets Per Tick: 500\n" +
                 "  # The separator character for decimals in <health_percentage> tag.\n" +
                 "  Decimal Separator: '.'\n" +
                 "  Special Repair Item:\n" +
@@ -310,8 +518,11 @@ public final class SilkTouchPlus extends JavaPlugin {
                 "  # If true, only the loot of entities spawned by mob spawners can be used to repair.\n" +
                 "  # If false, loot of all entities killed by a player can be used as repair for spawners.\n" +
                 "  Only Spawner Loot Can Repair: true\n" +
+                "  # For how many minutes mobs spawned by spawners are remembered as spawner mobs, in case they're removed\n" +
+                "  #without dying. Mobs in unloaded chunks are remembered until they're loaded again.\n" +
+                "  Spawner Mob Memory: 60\n" +
                 "\n" +
-                "# A whitelist of mobs allowed to spawn from spawners.\n" +
+                "# A whitelist of mobs allowed to spawn from spawners. Leave empty to allow all mob types.\n" +
                 "# Use it to prevent spawners from spawning unwanted mob types.\n" +
                 "Spawn Whitelist:\n" +
                 "#- 'BLAZE'\n" +
@@ -320,7 +531,39 @@ public final class SilkTouchPlus extends JavaPlugin {
                 "#- 'SILVERFISH'\n" +
                 "#- 'SKELETON'\n" +
                 "#- 'SPIDER'\n" +
-                "#- 'ZOMBIE'");
+                "#- 'ZOMBIE'\n" +
+                "\n" +
+                "# Mobs that are never allowed to spawn from spawners, even if they are in the whitelist.\n" +
+                "Spawn Blacklist: []\n" +
+                "\n" +
+                "# Spawners of these types don't spawn mobs. Instead, the loot and experience the mobs would drop are put in a\n" +
+                "#container next to the spawner, or kept in the spawner until a player right clicks it with empty hands.\n" +
+                "# Loot that only drops when killed by a player is given when a player is activating the spawner.\n" +
+                "# Big farms of these types are much lighter on the server, since there are no mobs to tick.\n" +
+                "Virtual Spawning:\n" +
+                "  Types: []\n" +
+                "  # How many items each spawner can keep. Loot beyond this amount is lost.\n" +
+                "  Max Items: 1728\n" +
+                "\n" +
+                "# Mobs of these types spawned by spawners are merged into a single mob near the spawner, named with how many\n" +
+                "#mobs it stands for. Stacked mobs don't despawn, since they're named.\n" +
+                "Mob Stacking:\n" +
+                "  Types: []\n" +
+                "  # How far from the spawner the stacked mob can be to keep merging the spawned mobs.\n" +
+                "  Radius: 8\n" +
+                "  Max Stack Size: 64\n" +
+                "  # If true, killing a stacked mob kills the whole stack, multiplying its loot and experience. If false, only\n" +
+                "  #one mob of the stack is killed.\n" +
+                "  Kill Whole Stack: false\n" +
+                "\n" +
+                "# Spawn settings of specific worlds. Settings left out are the same as above.\n" +
+                "World Overrides:\n" +
+                "#  world_nether:\n" +
+                "#    Spawn Whitelist: [ BLAZE, MAGMA_CUBE ]\n" +
+                "#    Spawn Blacklist: []\n" +
+                "#    Spawn Damage: 0.001\n" +
+                "#    Spawn Damage Per Type:\n" +
+                "#      BLAZE: 0.002");
         private static final @NotNull ConfigurationHolder langEN_US = new ConfigurationHolder(folder.resolve("Language").resolve("Language EN-US.yml"), "" +
                 "General:\n" +
                 "  No Permission: '&4You don''t have permission to do this.'\n" +
@@ -360,6 +603,10 @@ public final class SilkTouchPlus extends JavaPlugin {
                 "\n" +
                 "#Variables: <type>\n" +
                 "Placed: '&fYou placed a &c<type>&f spawner on the ground!'\n" +
+                "#Variables: <type> <amount>\n" +
+                "Stacked: '&fYou added a &c<type>&f spawner to the stack, which now has &c<amount>&f spawners!'\n" +
+                "#Variables: <type> <amount>\n" +
+                "Mob Stack Name: '&c<amount>x &f<type>'\n" +
                 "\n" +
                 "Reload:\n" +
                 "  Success: '&aPlugin reloaded successfully!'\n" +
@@ -392,7 +639,11 @@ public final class SilkTouchPlus extends JavaPlugin {
                 "  #Variables: <type> <health> <player>\n" +
                 "  Success: '&7Gave a &f<type>&7 spawner with &f<health>%&7 health to &f<player>&7.'\n" +
                 "  #Variables: <player>\n" +
-                "  Full: '&cInventory of &7<player>&c is full!'\n");
+                "  Full: '&cInventory of &7<player>&c is full!'\n" +
+                "\n" +
+                "#Variables: <type>\n" +
+                "Virtual Spawning:\n" +
+                "  Collected: '&7You collected the loot kept in this &f<type>&7 spawner.'\n");
         private static final @NotNull ConfigurationHolder langPT_BR = new ConfigurationHolder(folder.resolve("Language").resolve("Language PT-BR.yml"), "" +
                 "General:\n" +
                 "  No Permission: '&4Você não tem permissão para fazer isso.'\n" +
@@ -432,6 +683,10 @@ public final class SilkTouchPlus extends JavaPlugin {
                 "\n" +
                 "#Variáveis: <type>\n" +
                 "Placed: '&fVocê colocou um spawner de &c<type>&f no chão!'\n" +
+                "#Variáveis: <type> <amount>\n" +
+                "Stacked: '&fVocê adicionou um spawner de &c<type>&f à pilha, que agora tem &c<amount>&f spawners!'\n" +
+                "#Variáveis: <type> <amount>\n" +
+                "Mob Stack Name: '&c<amount>x &f<type>'\n" +
                 "\n" +
                 "Reload:\n" +
                 "  Success: '&aPlugin recarregado com sucesso!'\n" +
@@ -464,7 +719,11 @@ public final class SilkTouchPlus extends JavaPlugin {
                 "  #Variáveis: <type> <health> <player>\n" +
                 "  Success: '&7Dado um spawner de &f<type>&7 com &f<health>%&7 de vida para &f<player>&7.'\n" +
                 "  #Variáveis: <player>\n" +
-                "  Full: '&cInventário de &7<player>&c está cheio!'\n");
+                "  Full: '&cInventário de &7<player>&c está cheio!'\n" +
+                "\n" +
+                "#Variáveis: <type>\n" +
+                "Virtual Spawning:\n" +
+                "  Collected: '&7Você coletou o loot guardado neste spawner de &f<type>&7.'\n");
 
         static {
             loader.registerConfiguration(config);
@@ -18,28 +18,30 @@
 
 package com.epicnicity322.silktouchplus.hook;
 
-import com.epicnicity322.silktouchplus.SilkTouchPlus;
+import com.epicnicity322.silktouchplus.util.BlockMap;
 import com.epicnicity322.silktouchplus.util.HologramHandler;
-import com.epicnicity322.silktouchplus.util.SilkTouchPlusUtil;
+import com.epicnicity322.silktouchplus.util.LongHashMap;
 import eu.decentsoftware.holograms.api.holograms.Hologram;
 import eu.decentsoftware.holograms.api.holograms.HologramLine;
 import eu.decentsoftware.holograms.api.holograms.HologramPage;
 import org.bukkit.Location;
-import org.bukkit.block.CreatureSpawner;
-import org.bukkit.persistence.PersistentDataContainer;
-import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 public final class DecentHologramsHook implements HologramHandler {
+    private static final @NotNull Set<Capability> capabilities = Collections.unmodifiableSet(EnumSet.of(Capability.REMOVE_CHUNK, Capability.REMOVE_WORLD));
     private static int id = 0;
-    private final @NotNull SilkTouchPlus plugin;
-    private final @NotNull HashMap<Location, Hologram> holograms = new HashMap<>();
+    private final @NotNull BlockMap<ShownHologram> holograms = new BlockMap<>();
     private boolean enabled = true;
 
-    public DecentHologramsHook(@NotNull SilkTouchPlus plugin) {
-        this.plugin = plugin;
+    @Override
+    public @NotNull Set<Capability> getCapabilities() {
+        return capabilities;
     }
 
     @Override
@@ -53,48 +55,79 @@ public final class DecentHologramsHook implements HologramHandler {
     }
 
     @Override
-    public void createHologram(@NotNull CreatureSpawner spawner, double health) {
-        if (!enabled) return;
-        Location location = spawner.getLocation();
-        PersistentDataContainer container = spawner.getPersistentDataContainer();
-
-        if (container.getOrDefault(plugin.hologramEnabled, PersistentDataType.INTEGER, 0) != 1) {
-            removeHologram(location);
-            return;
-        }
-
-        String[] lines = SilkTouchPlusUtil.separateLines(SilkTouchPlus.getLanguage().getColored("Spawner Hologram").replace("<type>", spawner.getSpawnedType().name()).replace("<health>", Double.toString(health)).replace("<health_percentage>", SilkTouchPlusUtil.formatHealth(health)));
-
-        if (lines.length == 0 || lines[0].isEmpty()) {
-            removeHologram(location);
-            return;
-        }
-
-        Hologram hologram = holograms.get(location);
+    public void setHologram(@NotNull Location location, @NotNull String[] lines) {
+        ShownHologram shown = holograms.get(location);
 
-        if (hologram == null) {
-            holograms.put(location, hologram = new Hologram("stphologram" + id++, location.clone().add(0.5, 2.0, 0.5), false));
-            hologram.showAll();
-        } else {
-            hologram.removePage(0);
+        if (shown == null) {
+            Hologram hologram = new Hologram("stphologram" + id++, location.clone().add(0.5, 2.0, 0.5), false);
+            hologram.setDefaultVisibleState(false);
+            holograms.put(location, shown = new ShownHologram(hologram));
         }
 
+        Hologram hologram = shown.hologram;
         HologramPage page = hologram.getPage(0);
         if (page == null) page = hologram.insertPage(0);
-        for (String line : lines) page.addLine(new HologramLine(page, page.getNextLineLocation(), line));
+        String[] previous = shown.lines;
+        int common = Math.min(previous.length, lines.length);
+
+        // Only the content of the changed lines is set, so the line entities are not respawned.
+        for (int i = 0; i < common; i++) {
+            if (lines[i].equals(previous[i])) continue;
+            HologramLine line = page.getLine(i);
+            line.setContent(lines[i]);
+            line.updateAll();
+        }
+        for (int i = previous.length - 1; i >= lines.length; i--) page.removeLine(i);
+        for (int i = previous.length; i < lines.length; i++) page.addLine(new HologramLine(page, page.getNextLineLocation(), lines[i]));
+        shown.lines = lines;
+    }
+
+    @Override
+    public void showHologram(@NotNull Location location, @NotNull Player player) {
+        ShownHologram shown = holograms.get(location);
+        if (shown == null) return;
+        shown.hologram.setShowPlayer(player);
+        shown.hologram.show(player, 0);
+    }
+
+    @Override
+    public void hideHologram(@NotNull Location location, @NotNull Player player) {
+        ShownHologram shown = holograms.get(location);
+        if (shown == null) return;
+        shown.hologram.removeShowPlayer(player);
+        shown.hologram.hide(player);
     }
 
     @Override
     public void removeHologram(@NotNull Location location) {
-        Hologram hologram = holograms.remove(location);
-        if (hologram != null) hologram.delete();
+        ShownHologram shown = holograms.remove(location);
+        if (shown != null) shown.hologram.delete();
+    }
+
+    @Override
+    public void removeHolograms(@NotNull World world, int chunkX, int chunkZ) {
+        LongHashMap<ShownHologram> removed = holograms.removeChunk(world, chunkX, chunkZ);
+        if (removed != null) removed.forEach((block, shown) -> shown.hologram.delete());
+    }
+
+    @Override
+    public void removeHolograms(@NotNull World world) {
+        LongHashMap<LongHashMap<ShownHologram>> removed = holograms.removeWorld(world);
+        if (removed != null) removed.forEach((chunkKey, chunk) -> chunk.forEach((block, shown) -> shown.hologram.delete()));
     }
 
     @Override
     public void clear() {
-        holograms.entrySet().removeIf(entry -> {
-            entry.getValue().delete();
-            return true;
-        });
+        holograms.forEach((world, block, shown) -> shown.hologram.delete());
+        holograms.clear();
+    }
+
+    private static final class ShownHologram {
+        private final @NotNull Hologram hologram;
+        private @NotNull String[] lines = new String[0];
+
+        private ShownHologram(@NotNull Hologram hologram) {
+            this.hologram = hologram;
+        }
     }
 }
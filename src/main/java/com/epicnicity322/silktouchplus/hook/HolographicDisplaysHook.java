@@ -19,25 +19,46 @@
 package com.epicnicity322.silktouchplus.hook;
 
 import com.epicnicity322.silktouchplus.SilkTouchPlus;
+import com.epicnicity322.silktouchplus.util.BlockMap;
 import com.epicnicity322.silktouchplus.util.HologramHandler;
-import com.epicnicity322.silktouchplus.util.SilkTouchPlusUtil;
+import com.epicnicity322.silktouchplus.util.LongHashMap;
 import com.gmail.filoghost.holographicdisplays.api.Hologram;
 import com.gmail.filoghost.holographicdisplays.api.HologramsAPI;
+import com.gmail.filoghost.holographicdisplays.api.line.TextLine;
 import org.bukkit.Location;
-import org.bukkit.block.CreatureSpawner;
-import org.bukkit.persistence.PersistentDataContainer;
-import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 public final class HolographicDisplaysHook implements HologramHandler {
+    private static final @NotNull Set<Capability> capabilities = Collections.unmodifiableSet(EnumSet.of(Capability.REMOVE_CHUNK, Capability.REMOVE_WORLD));
     private final @NotNull SilkTouchPlus plugin;
-    private final @NotNull HashMap<Location, Hologram> holograms = new HashMap<>();
+    private final @NotNull BlockMap<ShownHologram> holograms = new BlockMap<>();
+    /**
+     * Holograms this plugin created before hooking, by the spawner they're above, so they can be reused.
+     */
+    private final @NotNull BlockMap<Hologram> leftovers = new BlockMap<>();
     private boolean enabled = true;
+    private boolean cleared = false;
 
     public HolographicDisplaysHook(@NotNull SilkTouchPlus plugin) {
         this.plugin = plugin;
+
+        for (Hologram hologram : HologramsAPI.getHolograms(plugin)) {
+            double x = hologram.getX() - 0.5, y = hologram.getY() - 2.0, z = hologram.getZ() - 0.5;
+            // Only holograms placed exactly above a block, like spawner holograms are.
+            if (x != Math.floor(x) || y != Math.floor(y) || z != Math.floor(z)) continue;
+            leftovers.put(hologram.getWorld(), (int) x, (int) y, (int) z, hologram);
+        }
+    }
+
+    @Override
+    public @NotNull Set<Capability> getCapabilities() {
+        return capabilities;
     }
 
     @Override
@@ -51,52 +72,86 @@ public final class HolographicDisplaysHook implements HologramHandler {
     }
 
     @Override
-    public void createHologram(@NotNull CreatureSpawner spawner, double health) {
-        if (!enabled) return;
-        Location location = spawner.getLocation();
-        PersistentDataContainer container = spawner.getPersistentDataContainer();
-        if (container.getOrDefault(plugin.hologramEnabled, PersistentDataType.INTEGER, 0) != 1) {
-            removeHologram(location);
-            return;
-        }
-        String[] lines = SilkTouchPlusUtil.separateLines(SilkTouchPlus.getLanguage().getColored("Spawner Hologram").replace("<type>", spawner.getSpawnedType().name()).replace("<health>", Double.toString(health)).replace("<health_percentage>", SilkTouchPlusUtil.formatHealth(health)));
+    public void setHologram(@NotNull Location location, @NotNull String[] lines) {
+        ShownHologram shown = holograms.get(location);
 
-        if (lines.length == 0 || lines[0].isEmpty()) {
-            removeHologram(location);
-            return;
+        if (shown == null) {
+            Hologram hologram = leftovers.remove(location);
+
+            if (hologram == null || hologram.isDeleted()) {
+                hologram = HologramsAPI.createHologram(plugin, location.clone().add(0.5, 2.0, 0.5));
+            } else {
+                hologram.clearLines();
+            }
+            hologram.getVisibilityManager().setVisibleByDefault(false);
+            holograms.put(location, shown = new ShownHologram(hologram));
         }
 
-        Hologram hologram = holograms.get(location);
+        Hologram hologram = shown.hologram;
+        String[] previous = shown.lines;
+        int common = Math.min(previous.length, lines.length);
 
-        if (hologram == null) {
-            Location hologramLocation = location.clone().add(0.5, 2.0, 0.5);
-            for (Hologram h : HologramsAPI.getHolograms(plugin)) {
-                if (h.getLocation().equals(hologramLocation)) {
-                    holograms.put(location, hologram = h);
-                    hologram.clearLines();
-                    break;
-                }
-            }
-            if (hologram == null)
-                holograms.put(location, hologram = HologramsAPI.createHologram(plugin, hologramLocation));
-        } else {
-            hologram.clearLines();
+        // Only the text of the changed lines is set, so the line entities are not respawned.
+        for (int i = 0; i < common; i++) {
+            if (!lines[i].equals(previous[i])) ((TextLine) hologram.getLine(i)).setText(lines[i]);
         }
+        for (int i = previous.length - 1; i >= lines.length; i--) hologram.removeLine(i);
+        for (int i = previous.length; i < lines.length; i++) hologram.appendTextLine(lines[i]);
+        shown.lines = lines;
+    }
+
+    @Override
+    public void showHologram(@NotNull Location location, @NotNull Player player) {
+        ShownHologram shown = holograms.get(location);
+        if (shown != null) shown.hologram.getVisibilityManager().showTo(player);
+    }
 
-        for (String line : lines) hologram.appendTextLine(line);
+    @Override
+    public void hideHologram(@NotNull Location location, @NotNull Player player) {
+        ShownHologram shown = holograms.get(location);
+        if (shown != null) shown.hologram.getVisibilityManager().hideTo(player);
     }
 
     @Override
     public void removeHologram(@NotNull Location location) {
-        Hologram hologram = holograms.remove(location);
-        if (hologram != null) hologram.delete();
+        ShownHologram shown = holograms.remove(location);
+        if (shown != null) shown.hologram.delete();
+    }
+
+    @Override
+    public void removeHolograms(@NotNull World world, int chunkX, int chunkZ) {
+        LongHashMap<ShownHologram> removed = holograms.removeChunk(world, chunkX, chunkZ);
+        if (removed != null) removed.forEach((block, shown) -> shown.hologram.delete());
+    }
+
+    @Override
+    public void removeHolograms(@NotNull World world) {
+        LongHashMap<LongHashMap<ShownHologram>> removed = holograms.removeWorld(world);
+        if (removed != null) removed.forEach((chunkKey, chunk) -> chunk.forEach((block, shown) -> shown.hologram.delete()));
     }
 
     @Override
     public void clear() {
-        holograms.entrySet().removeIf(entry -> {
-            entry.getValue().delete();
-            return true;
+        holograms.forEach((world, block, shown) -> shown.hologram.delete());
+        holograms.clear();
+        if (!cleared) {
+            // The first clear happens on load, before any hologram is set, so the leftovers are kept to be reused.
+            cleared = true;
+            return;
+        }
+        // Leftovers that were never reused would otherwise stay in the world with nothing tracking them.
+        leftovers.forEach((world, block, hologram) -> {
+            if (!hologram.isDeleted()) hologram.delete();
         });
+        leftovers.clear();
+    }
+
+    private static final class ShownHologram {
+        private final @NotNull Hologram hologram;
+        private @NotNull String[] lines = new String[0];
+
+        private ShownHologram(@NotNull Hologram hologram) {
+            this.hologram = hologram;
+        }
     }
 }
@@ -0,0 +1,291 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.listener;
+
+import com.epicnicity322.silktouchplus.SilkTouchPlus;
+import com.epicnicity322.silktouchplus.util.BlockMap;
+import com.epicnicity322.silktouchplus.util.KillAttribution;
+import com.epicnicity322.silktouchplus.util.MessageTemplate;
+import com.epicnicity322.silktouchplus.util.SilkTouchPlusUtil;
+import com.epicnicity322.silktouchplus.util.SpawnerMobRegistry;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.block.CreatureSpawner;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Mob;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.entity.SpawnerSpawnEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.loot.LootContext;
+import org.bukkit.loot.LootTable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Merges the mobs spawned by a spawner into a single stacked mob near the spawner, named with how many mobs it stands
+ * for. Killing a stacked mob kills one mob of the stack, or the whole stack with its loot and experience multiplied.
+ */
+public final class MobStackListener implements Listener {
+    private final @NotNull SilkTouchPlus plugin;
+    /**
+     * The stacked mob each spawner is currently merging its spawns into.
+     */
+    private final @NotNull BlockMap<Entity> leaders = new BlockMap<>();
+    private @NotNull EnumSet<EntityType> types = EnumSet.noneOf(EntityType.class);
+    private double radius = 8.0;
+    private int maxStackSize = 64;
+    private boolean killWholeStack = false;
+    private @NotNull MessageTemplate nameTemplate = MessageTemplate.compile("<amount>x <type>", "<type>", "<amount>");
+    /**
+     * The stacked mob dying in the current death event, read before the registry forgets it, so the rest of the stack
+     * is spawned once the death can no longer be cancelled.
+     */
+    private @Nullable Entity dying;
+    private @Nullable EntityType dyingSpawnerType;
+    private int dyingStack;
+    /**
+     * The mob of the current spawn event, and the stack it merges into or starts. The registry is only changed in
+     * {@link #onSpawnerSpawnMonitor(SpawnerSpawnEvent)}, once the spawn can no longer be cancelled.
+     */
+    private @Nullable Entity spawning;
+    private @Nullable Entity spawningLeader;
+    private int spawningStack;
+
+    public MobStackListener(@NotNull SilkTouchPlus plugin) {
+        this.plugin = plugin;
+    }
+
+    private void name(@NotNull Entity entity, int stack) {
+        if (stack > 1) {
+            entity.setCustomName(nameTemplate.formatCached(entity.getType().name(), Integer.toString(stack)));
+            entity.setCustomNameVisible(true);
+        } else {
+            entity.setCustomName(null);
+            entity.setCustomNameVisible(false);
+        }
+    }
+
+    /**
+     * Adds the item to the drops, filling the stacks of the same item first.
+     */
+    private static void merge(@NotNull List<ItemStack> drops, @NotNull ItemStack item) {
+        int amount = item.getAmount();
+
+        for (ItemStack drop : drops) {
+            int space = drop.getMaxStackSize() - drop.getAmount();
+            if (space <= 0 || !drop.isSimilar(item)) continue;
+            int added = Math.min(space, amount);
+            drop.setAmount(drop.getAmount() + added);
+            if ((amount -= added) == 0) return;
+        }
+
+        item.setAmount(amount);
+        drops.add(item);
+    }
+
+    /**
+     * Compiles the name of stacked mobs from the language.
+     */
+    public void loadName() {
+        nameTemplate = MessageTemplate.compile(SilkTouchPlus.getLanguage().getColored("Mob Stack Name"), "<type>", "<amount>");
+    }
+
+    public void setTypes(@NotNull Collection<EntityType> types) {
+        this.types = types.isEmpty() ? EnumSet.noneOf(EntityType.class) : EnumSet.copyOf(types);
+    }
+
+    public void setRadius(double radius) {
+        this.radius = radius;
+    }
+
+    public void setMaxStackSize(int maxStackSize) {
+        this.maxStackSize = maxStackSize;
+    }
+
+    public void setKillWholeStack(boolean killWholeStack) {
+        this.killWholeStack = killWholeStack;
+    }
+
+    private boolean canMerge(@Nullable Entity leader, @NotNull EntityType type, @NotNull Location spawnerLocation, int spawned) {
+        if (leader == null || !leader.isValid() || leader.getType() != type) return false;
+        if (leader.getWorld() != spawnerLocation.getWorld() || leader.getLocation().distanceSquared(spawnerLocation) > radius * radius) {
+            return false;
+        }
+        int stack = plugin.getSpawnerMobs().getStack(leader);
+        return stack != 0 && stack + spawned <= maxStackSize;
+    }
+
+    /**
+     * @param entity The mob of the current spawn event.
+     * @return Whether this mob starts a new mob stack, which already counts the mobs of stacked spawners.
+     */
+    public boolean isStartingStack(@NotNull Entity entity) {
+        return spawning == entity && spawningLeader == null;
+    }
+
+    /**
+     * Runs before the HIGHEST handler of {@link SpawnerSpawnListener}, which is registered later, so it knows the
+     * stacked spawner's mobs were already counted.
+     */
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onSpawnerSpawn(SpawnerSpawnEvent event) {
+        spawning = null;
+        EntityType type = event.getEntityType();
+        if (!types.contains(type)) return;
+
+        CreatureSpawner spawner = event.getSpawner();
+        Location spawnerLocation = spawner.getLocation();
+        // Stacked spawners spawn one mob per spawner.
+        int spawned = plugin.getHealthCache().getStack(spawner);
+        Entity leader = leaders.get(spawnerLocation);
+
+        if (!canMerge(leader, type, spawnerLocation, spawned)) {
+            // The spawner lost track of its stacked mob, like when the chunk was reloaded or the mob died.
+            leader = null;
+            for (Entity nearby : spawner.getWorld().getNearbyEntities(spawnerLocation, radius, radius, radius)) {
+                if (canMerge(nearby, type, spawnerLocation, spawned)) {
+                    leader = nearby;
+                    break;
+                }
+            }
+        }
+
+        spawning = event.getEntity();
+        spawningLeader = leader;
+        spawningStack = spawned;
+        if (leader == null) return;
+
+        // The spawned mob is merged into the leader instead of spawning.
+        event.setCancelled(true);
+        // Otherwise the spawner tries again every tick, growing the stack each time.
+        SilkTouchPlusUtil.resetDelay(spawner);
+    }
+
+    /**
+     * Not ignoring cancelled events, since merged spawns are cancelled by {@link #onSpawnerSpawn(SpawnerSpawnEvent)}.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onSpawnerSpawnMonitor(SpawnerSpawnEvent event) {
+        Entity entity = event.getEntity();
+        Entity leader = spawningLeader;
+        if (spawning != entity) return;
+        spawning = null;
+        spawningLeader = null;
+        SpawnerMobRegistry spawnerMobs = plugin.getSpawnerMobs();
+        CreatureSpawner spawner = event.getSpawner();
+
+        if (leader != null) {
+            // Another plugin let the mob spawn after all, or the leader is gone.
+            if (!event.isCancelled() || !leader.isValid()) return;
+            int previous = spawnerMobs.getStack(leader);
+            if (previous == 0) return;
+            int stack = previous + spawningStack;
+            spawnerMobs.setStack(leader, stack);
+            name(leader, stack);
+            leaders.put(spawner.getLocation(), leader);
+            return;
+        }
+        if (event.isCancelled()) return;
+
+        // The spawned mob starts a new stack.
+        spawnerMobs.register(entity, spawner.getSpawnedType());
+        spawnerMobs.setStack(entity, spawningStack);
+        name(entity, spawningStack);
+        leaders.put(spawner.getLocation(), entity);
+    }
+
+    /**
+     * Runs before {@link SpawnerEntityDeathListener#onEntityDeath(EntityDeathEvent)}, so the multiplied drops are also
+     * tagged as repair loot, and the stack is read before the registry forgets the mob.
+     */
+    @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
+    public void onEntityDeath(EntityDeathEvent event) {
+        LivingEntity entity = event.getEntity();
+        SpawnerMobRegistry spawnerMobs = plugin.getSpawnerMobs();
+        dying = null;
+        int stack = spawnerMobs.getStack(entity);
+        if (stack <= 1) return;
+
+        if (!killWholeStack) {
+            // The rest of the stack lives on as a new mob, spawned in #onEntityDeathMonitor(EntityDeathEvent).
+            dyingSpawnerType = spawnerMobs.getSpawnerType(entity);
+            if (dyingSpawnerType == null) return;
+            dying = entity;
+            dyingStack = stack;
+            return;
+        }
+
+        event.setDroppedExp(event.getDroppedExp() * stack);
+        if (!(entity instanceof Mob)) return;
+        LootTable lootTable = ((Mob) entity).getLootTable();
+        if (lootTable == null) return;
+
+        // Rolling the loot of every other mob in the stack, equipment is only dropped by the mob that was killed.
+        Player killer = KillAttribution.getKiller(entity);
+        int looting = killer == null ? 0 : killer.getInventory().getItemInMainHand().getEnchantmentLevel(Enchantment.LOOT_BONUS_MOBS);
+        LootContext context = new LootContext.Builder(entity.getLocation()).lootedEntity(entity).killer(killer)
+                .lootingModifier(looting).build();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<ItemStack> drops = event.getDrops();
+
+        for (int i = 1; i < stack; i++) {
+            for (ItemStack item : lootTable.populateLoot(random, context)) merge(drops, item);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityDeathMonitor(EntityDeathEvent event) {
+        LivingEntity entity = event.getEntity();
+        EntityType spawnerType = dyingSpawnerType;
+        if (dying != entity || spawnerType == null) return;
+        dying = null;
+
+        Entity remainder = entity.getWorld().spawnEntity(entity.getLocation(), entity.getType());
+        if (!remainder.isValid()) return;
+        SpawnerMobRegistry spawnerMobs = plugin.getSpawnerMobs();
+        spawnerMobs.register(remainder, spawnerType);
+        spawnerMobs.setStack(remainder, dyingStack - 1);
+        name(remainder, dyingStack - 1);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        leaders.removeChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        leaders.removeWorld(event.getWorld());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.listener;
+
+import com.epicnicity322.silktouchplus.SilkTouchPlus;
+import com.epicnicity322.silktouchplus.render.PlayerViews;
+import com.epicnicity322.silktouchplus.render.SpawnerRenderer;
+import com.epicnicity322.silktouchplus.util.HologramUpdater;
+import org.bukkit.Location;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.*;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Keeps the chunk of each player in {@link PlayerViews} up to date, so spawners are only rendered to players near them.
+ */
+public final class PlayerViewListener implements Listener {
+    private final @NotNull SpawnerRenderer renderer;
+    private final @NotNull PlayerViews views;
+
+    public PlayerViewListener(@NotNull SpawnerRenderer renderer) {
+        this.renderer = renderer;
+        this.views = renderer.getViews();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        views.update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        views.remove(event.getPlayer());
+        renderer.forget(event.getPlayer());
+        HologramUpdater hologramUpdater = SilkTouchPlus.getHologramUpdater();
+        if (hologramUpdater != null) hologramUpdater.removeViewer(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (to == null) return;
+        // Only chunk changes matter.
+        if ((from.getBlockX() >> 4) == (to.getBlockX() >> 4) && (from.getBlockZ() >> 4) == (to.getBlockZ() >> 4)) return;
+        views.update(event.getPlayer(), to);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onTeleport(PlayerTeleportEvent event) {
+        Location to = event.getTo();
+        if (to != null) views.update(event.getPlayer(), to);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onRespawn(PlayerRespawnEvent event) {
+        views.update(event.getPlayer(), event.getRespawnLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChangedWorld(PlayerChangedWorldEvent event) {
+        views.update(event.getPlayer(), event.getPlayer().getLocation());
+    }
+}
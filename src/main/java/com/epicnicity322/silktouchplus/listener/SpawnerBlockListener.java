@@ -20,8 +20,8 @@ package com.epicnicity322.silktouchplus.listener;
 
 import com.epicnicity322.epicpluginlib.bukkit.lang.MessageSender;
 import com.epicnicity322.silktouchplus.SilkTouchPlus;
+import com.epicnicity322.silktouchplus.util.SpawnerHealthCache;
 import org.bukkit.GameMode;
-import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.CreatureSpawner;
@@ -29,10 +29,14 @@ import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataContainer;
 import org.bukkit.persistence.PersistentDataType;
 import org.jetbrains.annotations.NotNull;
@@ -45,6 +49,8 @@ public final class SpawnerBlockListener implements Listener {
     private final @NotNull SilkTouchPlus plugin;
     @NotNull List<String> breakTools = Arrays.asList("DIAMOND_PICKAXE", "NETHERITE_PICKAXE");
     private int silkTouchLevel = 2;
+    private boolean stacking = false;
+    private int maxStackSize = 16;
 
     public SpawnerBlockListener(@NotNull SilkTouchPlus plugin) {
         this.plugin = plugin;
@@ -58,37 +64,102 @@ public final class SpawnerBlockListener implements Listener {
         this.silkTouchLevel = silkTouchLevel;
     }
 
-    @EventHandler(ignoreCancelled = true)
+    public void setStacking(boolean stacking, int maxStackSize) {
+        this.stacking = stacking;
+        this.maxStackSize = maxStackSize;
+    }
+
+    /**
+     * Stacks lose one spawner at a time, and the block stays with the rest of the stack. This is handled at HIGHEST,
+     * after protection plugins had the chance to cancel the break, because the event is cancelled to keep the block.
+     */
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
         Block block = event.getBlock();
         if (block.getType() != Material.SPAWNER) return;
-        Location location = block.getLocation();
+        CreatureSpawner spawner = (CreatureSpawner) block.getState();
+        SpawnerHealthCache healthCache = plugin.getHealthCache();
+        int stack = healthCache.getStack(spawner);
+        if (stack == 1) return;
+
+        event.setCancelled(true);
+        dropSpawner(event, spawner);
+        healthCache.setStack(spawner, stack - 1);
+    }
 
-        SpawnerSpawnListener.removeSpawnerRender(location);
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreakMonitor(BlockBreakEvent event) {
+        Block block = event.getBlock();
+        if (block.getType() != Material.SPAWNER) return;
+        CreatureSpawner spawner = (CreatureSpawner) block.getState();
 
+        // Dropping before removing from cache, so the item has the cached health.
+        dropSpawner(event, spawner);
+        removeSpawner(spawner);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        for (Block block : event.blockList()) {
+            if (block.getType() == Material.SPAWNER) removeSpawner((CreatureSpawner) block.getState());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        for (Block block : event.blockList()) {
+            if (block.getType() == Material.SPAWNER) removeSpawner((CreatureSpawner) block.getState());
+        }
+    }
+
+    /**
+     * Forgets everything about a spawner that is being destroyed, so none of it is written onto a spawner placed in the
+     * same position later.
+     */
+    private void removeSpawner(@NotNull CreatureSpawner spawner) {
+        SpawnerSpawnListener.removeSpawnerRender(spawner.getLocation());
+        plugin.getHealthCache().remove(spawner.getWorld(), spawner.getX(), spawner.getY(), spawner.getZ());
+        plugin.getLootBuffer().drop(spawner);
+    }
+
+    private void dropSpawner(@NotNull BlockBreakEvent event, @NotNull CreatureSpawner spawner) {
         Player player = event.getPlayer();
         ItemStack hand = player.getInventory().getItemInMainHand();
         if (!breakTools.contains(hand.getType().name())) return;
         if (hand.getEnchantmentLevel(Enchantment.SILK_TOUCH) != silkTouchLevel) return;
         if (player.getGameMode() != GameMode.SURVIVAL) return;
 
-        CreatureSpawner spawner = (CreatureSpawner) block.getState();
         String type = spawner.getSpawnedType().name();
         MessageSender lang = SilkTouchPlus.getLanguage();
 
         if (player.hasPermission("silktouchplus.drop." + type)) {
-            block.getWorld().dropItemNaturally(location, SilkTouchPlus.getSpawner(spawner));
+            spawner.getWorld().dropItemNaturally(spawner.getLocation(), SilkTouchPlus.getSpawner(spawner));
             event.setExpToDrop(0);
             lang.send(player, lang.get("Drop.Dropped").replace("<type>", type));
         }
     }
 
-    @EventHandler(ignoreCancelled = true)
+    /**
+     * Adds the spawner being placed to the stack of the spawner it was placed against. Handled at HIGHEST, after
+     * protection plugins had the chance to cancel the placement, because the event is cancelled to not place the block.
+     */
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onBlockPlaceHighest(BlockPlaceEvent event) {
+        if (!stacking) return;
+        ItemMeta meta = event.getItemInHand().getItemMeta();
+        if (meta == null) return;
+        PersistentDataContainer data = meta.getPersistentDataContainer();
+        String type = data.get(plugin.spawnerType, PersistentDataType.STRING);
+        if (type != null) stack(event, data, type);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockPlace(BlockPlaceEvent event) {
         PersistentDataContainer data = Objects.requireNonNull(event.getItemInHand().getItemMeta()).getPersistentDataContainer();
         String type = data.get(plugin.spawnerType, PersistentDataType.STRING);
 
         if (type == null) return;
+        // Only reached if the spawner was not stacked, since stacking cancels the placement.
 
         Block block = event.getBlockPlaced();
 
@@ -104,8 +175,45 @@ public final class SpawnerBlockListener implements Listener {
         spawner.getPersistentDataContainer().set(plugin.spawnerHealth, PersistentDataType.DOUBLE, health);
         spawner.getPersistentDataContainer().set(plugin.hologramEnabled, PersistentDataType.INTEGER, 1);
         spawner.update();
+        SpawnerHealthCache healthCache = plugin.getHealthCache();
+        healthCache.setHealth(spawner, health);
+        healthCache.setStack(spawner, 1);
+        plugin.getLootBuffer().remove(block.getWorld(), block.getX(), block.getY(), block.getZ());
         SilkTouchPlus.getLanguage().send(event.getPlayer(), SilkTouchPlus.getLanguage().get("Placed").replace("<type>", type));
         SpawnerSpawnListener.addSpawnerRender(block.getLocation(), spawner, health);
-        SpawnerSpawnListener.renderHealth();
+        SpawnerSpawnListener.publishRenders();
+    }
+
+    /**
+     * Adds the spawner being placed to the stack of the spawner it was placed against, if they're the same type.
+     */
+    private void stack(@NotNull BlockPlaceEvent event, @NotNull PersistentDataContainer data, @NotNull String type) {
+        Block against = event.getBlockAgainst();
+        Player player = event.getPlayer();
+        if (against.getType() != Material.SPAWNER || player.isSneaking() || !player.hasPermission("silktouchplus.stack")) {
+            return;
+        }
+
+        CreatureSpawner spawner = (CreatureSpawner) against.getState();
+        if (!spawner.getSpawnedType().name().equals(type)) return;
+        SpawnerHealthCache healthCache = plugin.getHealthCache();
+        int stack = healthCache.getStack(spawner);
+        if (stack >= maxStackSize) return;
+
+        event.setCancelled(true);
+        if (player.getGameMode() != GameMode.CREATIVE) {
+            ItemStack item = event.getItemInHand().clone();
+            item.setAmount(item.getAmount() - 1);
+            player.getInventory().setItem(event.getHand(), item.getAmount() == 0 ? null : item);
+        }
+
+        // The stack's health is the average health of its spawners.
+        double health = (healthCache.getHealth(spawner) * stack + data.getOrDefault(plugin.spawnerHealth, PersistentDataType.DOUBLE, 1.0)) / (stack + 1);
+        healthCache.setHealth(spawner, health);
+        healthCache.setStack(spawner, stack + 1);
+        SilkTouchPlus.getLanguage().send(player, SilkTouchPlus.getLanguage().get("Stacked").replace("<type>", type)
+                .replace("<amount>", Integer.toString(stack + 1)));
+        SpawnerSpawnListener.addSpawnerRender(against.getLocation(), spawner, health);
+        SpawnerSpawnListener.publishRenders();
     }
 }
@@ -0,0 +1,134 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.listener;
+
+import com.epicnicity322.silktouchplus.SilkTouchPlus;
+import com.epicnicity322.silktouchplus.util.SpawnerHealthCache;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.CreatureSpawner;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldSaveEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.scheduler.BukkitTask;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public final class SpawnerChunkListener implements Listener {
+    /**
+     * How long each tick can be spent looking for spawners in loaded chunks.
+     */
+    private static final long SCAN_BUDGET = TimeUnit.MILLISECONDS.toNanos(2);
+    private final @NotNull SilkTouchPlus plugin;
+    private final @NotNull ArrayDeque<Chunk> scanQueue = new ArrayDeque<>();
+    private @Nullable BukkitTask scanTask;
+    private boolean entitiesWithChunks = false;
+
+    public SpawnerChunkListener(@NotNull SilkTouchPlus plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * @param entitiesWithChunks Whether entities are loaded and unloaded together with their chunk, which is the case
+     *                           before 1.17. Otherwise {@link SpawnerMobChunkListener} handles the spawner mobs.
+     */
+    public void setEntitiesWithChunks(boolean entitiesWithChunks) {
+        this.entitiesWithChunks = entitiesWithChunks;
+    }
+
+    /**
+     * Queues every loaded chunk to have its spawners registered. The chunks are scanned over the next ticks, so
+     * enabling the plugin on a big world doesn't cause a lag spike. A scan still running is restarted, so no chunk is
+     * scanned twice.
+     */
+    public void scanLoadedChunks() {
+        scanQueue.clear();
+        for (World world : plugin.getServer().getWorlds()) Collections.addAll(scanQueue, world.getLoadedChunks());
+        startScan();
+    }
+
+    private void startScan() {
+        if (scanTask == null && !scanQueue.isEmpty()) {
+            scanTask = plugin.getServer().getScheduler().runTaskTimer(plugin, this::scan, 1, 1);
+        }
+    }
+
+    private void scan() {
+        long deadline = System.nanoTime() + SCAN_BUDGET;
+        Chunk chunk;
+
+        while ((chunk = scanQueue.poll()) != null) {
+            // The chunk might have been unloaded while it was queued.
+            if (chunk.isLoaded()) register(chunk);
+            if (System.nanoTime() >= deadline) return;
+        }
+        if (scanTask != null) scanTask.cancel();
+        scanTask = null;
+    }
+
+    private void register(@NotNull Chunk chunk) {
+        SpawnerHealthCache healthCache = plugin.getHealthCache();
+
+        for (BlockState state : chunk.getTileEntities()) {
+            if (!(state instanceof CreatureSpawner)) continue;
+            CreatureSpawner spawner = (CreatureSpawner) state;
+            SpawnerSpawnListener.addSpawnerRender(spawner.getLocation(), spawner, healthCache.getHealth(spawner));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        if (entitiesWithChunks) plugin.getSpawnerMobs().restore(Arrays.asList(event.getChunk().getEntities()));
+        scanQueue.add(event.getChunk());
+        startScan();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        if (entitiesWithChunks) plugin.getSpawnerMobs().persist(Arrays.asList(chunk.getEntities()));
+        plugin.getHealthCache().flushChunk(chunk);
+        plugin.getLootBuffer().flushChunk(chunk);
+        SpawnerSpawnListener.removeSpawnerRenders(chunk);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldSave(WorldSaveEvent event) {
+        plugin.getHealthCache().flushWorld(event.getWorld());
+        plugin.getLootBuffer().flushWorld(event.getWorld());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        World world = event.getWorld();
+        plugin.getHealthCache().unloadWorld(world);
+        plugin.getLootBuffer().unloadWorld(world);
+        SpawnerSpawnListener.removeSpawnerRenders(world);
+    }
+}
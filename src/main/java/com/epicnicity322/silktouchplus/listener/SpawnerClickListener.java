@@ -20,8 +20,9 @@ package com.epicnicity322.silktouchplus.listener;
 
 import com.epicnicity322.epicpluginlib.bukkit.lang.MessageSender;
 import com.epicnicity322.silktouchplus.SilkTouchPlus;
-import com.epicnicity322.silktouchplus.util.HologramHandler;
+import com.epicnicity322.silktouchplus.util.HologramUpdater;
 import com.epicnicity322.silktouchplus.util.SilkTouchPlusUtil;
+import com.epicnicity322.silktouchplus.util.SpawnerHealthCache;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.CreatureSpawner;
@@ -82,7 +83,7 @@ public final class SpawnerClickListener implements Listener {
         PersistentDataContainer handContainer = handMeta.getPersistentDataContainer();
 
         CreatureSpawner spawner = (CreatureSpawner) block.getState();
-        PersistentDataContainer spawnerContainer = spawner.getPersistentDataContainer();
+        SpawnerHealthCache healthCache = plugin.getHealthCache();
         String spawnerType = spawner.getSpawnedType().name();
         Player player = event.getPlayer();
         MessageSender lang = SilkTouchPlus.getLanguage();
@@ -97,10 +98,11 @@ public final class SpawnerClickListener implements Listener {
                 return;
             }
 
-            double currentHealth = spawnerContainer.getOrDefault(plugin.spawnerHealth, PersistentDataType.DOUBLE, 1.0);
+            double currentHealth = healthCache.getHealth(spawner);
 
             if (currentHealth < maxRepairHealth) {
-                newHealth = currentHealth + lootRepairAmount;
+                // The health of a stack is shared, so each item repairs only one of its spawners.
+                newHealth = currentHealth + lootRepairAmount / healthCache.getStack(spawner);
                 if (newHealth > maxRepairHealth) newHealth = maxRepairHealth;
             } else {
                 lang.send(player, lang.get("Repair.Fully Repaired").replace("<type>", spawnerType));
@@ -109,10 +111,10 @@ public final class SpawnerClickListener implements Listener {
         } else if (handContainer.has(plugin.spawnerSpecialRepairItem, PersistentDataType.INTEGER)) {
             event.setCancelled(true);
             double maxRepairHealth = Math.max(specialRepairAmount, this.maxRepairHealth);
-            double currentHealth = spawnerContainer.getOrDefault(plugin.spawnerHealth, PersistentDataType.DOUBLE, 1.0);
+            double currentHealth = healthCache.getHealth(spawner);
 
             if (currentHealth < maxRepairHealth) {
-                newHealth = currentHealth + specialRepairAmount;
+                newHealth = currentHealth + specialRepairAmount / healthCache.getStack(spawner);
                 if (newHealth > maxRepairHealth) newHealth = maxRepairHealth;
             } else {
                 lang.send(player, lang.get("Repair.Fully Repaired").replace("<type>", spawnerType));
@@ -123,10 +125,9 @@ public final class SpawnerClickListener implements Listener {
         }
 
         hand.setAmount(hand.getAmount() - 1);
-        spawnerContainer.set(plugin.spawnerHealth, PersistentDataType.DOUBLE, newHealth);
-        spawner.update();
-        lang.send(player, lang.get("Repair.Repaired").replace("<type>", spawnerType)
-                .replace("<health>", Double.toString(newHealth)).replace("<health_percentage>", SilkTouchPlusUtil.formatHealth(newHealth)));
+        healthCache.setHealth(spawner, newHealth);
+        lang.send(player, SilkTouchPlus.getTemplate("Repair.Repaired").format(spawnerType, Double.toString(newHealth),
+                SilkTouchPlusUtil.formatHealth(newHealth)));
     }
 
     @EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = true)
@@ -137,11 +138,19 @@ public final class SpawnerClickListener implements Listener {
         if (block == null || block.getType() != Material.SPAWNER) return;
         Player player = event.getPlayer();
 
-        // When both hands are clear and player is sneaking, toggle the hologram.
+        // When both hands are clear, collect the loot kept by virtual spawns, or toggle the hologram if player is
+        //sneaking.
         if (player.getInventory().getItemInMainHand().getType().isAir() && player.getInventory().getItemInOffHand().getType().isAir()) {
-            HologramHandler hologramHandler = SilkTouchPlus.getHologramHandler();
+            HologramUpdater hologramUpdater = SilkTouchPlus.getHologramUpdater();
 
-            if (player.isSneaking() && hologramHandler != null && hologramHandler.isEnabled() && player.hasPermission("silktouchplus.hologram")) {
+            if (!player.isSneaking()) {
+                CreatureSpawner spawner = (CreatureSpawner) block.getState();
+
+                if (plugin.getLootBuffer().collect(spawner, player)) {
+                    MessageSender lang = SilkTouchPlus.getLanguage();
+                    lang.send(player, lang.get("Virtual Spawning.Collected").replace("<type>", spawner.getSpawnedType().name()));
+                }
+            } else if (hologramUpdater != null && hologramUpdater.isEnabled() && player.hasPermission("silktouchplus.hologram")) {
                 // Checking cooldown for preventing hologram toggling
                 Optional<MetadataValue> lastToggle = player.getMetadata("last_hologram_toggle").stream().findAny();
                 long now = System.currentTimeMillis();
@@ -160,7 +169,7 @@ public final class SpawnerClickListener implements Listener {
 
                 spawnerContainer.set(plugin.hologramEnabled, PersistentDataType.INTEGER, toggle ? 0 : 1);
                 spawner.update();
-                hologramHandler.createHologram(spawner, spawnerContainer.getOrDefault(plugin.spawnerHealth, PersistentDataType.DOUBLE, 1.0));
+                hologramUpdater.markDirty(spawner, plugin.getHealthCache().getHealth(spawner));
 
                 if (toggle) {
                     lang.send(player, lang.get("Spawner Hologram Toggle.Disabled"));
@@ -20,16 +20,16 @@ package com.epicnicity322.silktouchplus.listener;
 
 import com.epicnicity322.epicpluginlib.bukkit.lang.MessageSender;
 import com.epicnicity322.silktouchplus.SilkTouchPlus;
-import com.epicnicity322.silktouchplus.util.SilkTouchPlusUtil;
+import com.epicnicity322.silktouchplus.util.KillAttribution;
+import com.epicnicity322.silktouchplus.util.MessageTemplate;
 import org.bukkit.Material;
 import org.bukkit.enchantments.Enchantment;
-import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Mob;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
-import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
-import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.inventory.EntityEquipment;
 import org.bukkit.inventory.ItemFlag;
@@ -40,14 +40,17 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Objects;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 public final class SpawnerEntityDeathListener implements Listener {
-    private static final @NotNull Random random = new Random();
     private final @NotNull SilkTouchPlus plugin;
     private final @NotNull SpawnerClickListener clickListener;
     private final @NotNull ItemStack specialRepairItem = new ItemStack(Material.ENDER_EYE);
+    private final @NotNull EnumMap<EntityType, RepairLoot> repairLoot = new EnumMap<>(EntityType.class);
     private double dropChance = 0.01;
     private boolean onlySpawnerLootCanRepair = true;
 
@@ -57,6 +60,21 @@ public final class SpawnerEntityDeathListener implements Listener {
         setSpecialRepairItem(Material.ENDER_EYE, true);
     }
 
+    /**
+     * Computes the tag and lore of the repair loot of every entity type. Must be called after the loot repair amount
+     * is set.
+     */
+    public void loadRepairLoot() {
+        MessageTemplate lore = SilkTouchPlus.getTemplate("Repair.Loot Lore");
+        String health = Double.toString(clickListener.lootRepairAmount);
+        repairLoot.clear();
+
+        for (EntityType type : EntityType.values()) {
+            String[] lines = lore.formatLines(type.name(), health, clickListener.formattedLootRepairAmount);
+            repairLoot.put(type, new RepairLoot(type.name(), lines.length == 0 ? null : Arrays.asList(lines)));
+        }
+    }
+
     public void setOnlySpawnerLootCanRepair(boolean onlySpawnerLootCanRepair) {
         this.onlySpawnerLootCanRepair = onlySpawnerLootCanRepair;
     }
@@ -81,69 +99,128 @@ public final class SpawnerEntityDeathListener implements Listener {
         }
 
         meta.setDisplayName(lang.getColored("Repair.Special Repair Item.Display Name"));
-        meta.setLore(Arrays.asList(SilkTouchPlusUtil.separateLines(lang.getColored("Repair.Special Repair Item.Lore")
-                .replace("<health>", Double.toString(clickListener.specialRepairAmount)).replace("<health_percentage>", clickListener.formattedSpecialRepairAmount))));
+        meta.setLore(Arrays.asList(SilkTouchPlus.getTemplate("Repair.Special Repair Item.Lore").formatLines(null,
+                Double.toString(clickListener.specialRepairAmount), clickListener.formattedSpecialRepairAmount)));
         meta.getPersistentDataContainer().set(plugin.spawnerSpecialRepairItem, PersistentDataType.INTEGER, 1);
         meta.addItemFlags(ItemFlag.values());
         specialRepairItem.setItemMeta(meta);
     }
 
-    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
-    public void onEntityDamageByEntity(EntityDamageByEntityEvent event) {
-        // Special Repair Item must only drop when a mob is killed by a player.
-        if (dropChance == 0.0) return;
-        Entity entity = event.getEntity();
-        Entity damager = event.getDamager();
-        if (!(entity instanceof Mob)) return;
-        if (!(damager instanceof Player)) return;
-
-        if (((Mob) entity).getHealth() - event.getFinalDamage() <= 0.0) {
-            if (damager.hasPermission("silktouchplus.special") && (random.nextDouble() * 100.0) <= dropChance) {
-                MessageSender lang = SilkTouchPlus.getLanguage();
-                entity.getWorld().dropItemNaturally(entity.getLocation(), specialRepairItem.clone());
-                lang.send(event.getDamager(), lang.get("Repair.Special Repair Item.Drop")
-                        .replace("<health>", Double.toString(clickListener.specialRepairAmount))
-                        .replace("<health_percentage>", clickListener.formattedSpecialRepairAmount));
-            }
-            if (!onlySpawnerLootCanRepair) {
-                entity.getPersistentDataContainer().set(plugin.repairLootEntity, PersistentDataType.INTEGER, 1);
-            }
-        }
-    }
-
     @EventHandler(ignoreCancelled = true)
     public void onEntityDeath(EntityDeathEvent event) {
         // Spawner entity drops must be added "spawner_loot" key, so it can be checked if the loot is same type as the
         //spawner when repairing it.
 
-        Entity entity = event.getEntity();
+        LivingEntity entity = event.getEntity();
+        EntityType spawnerType = plugin.getSpawnerMobs().remove(entity);
         if (!(entity instanceof Mob)) return;
+        Player killer = KillAttribution.getKiller(entity);
+
+        // Special Repair Item must only drop when a mob is killed by a player.
+        if (killer != null && dropChance != 0.0 && killer.hasPermission("silktouchplus.special")
+                && ThreadLocalRandom.current().nextDouble() * 100.0 <= dropChance) {
+            entity.getWorld().dropItemNaturally(entity.getLocation(), specialRepairItem.clone());
+            SilkTouchPlus.getLanguage().send(killer, SilkTouchPlus.getTemplate("Repair.Special Repair Item.Drop")
+                    .formatCached(null, Double.toString(clickListener.specialRepairAmount), clickListener.formattedSpecialRepairAmount));
+        }
 
-        if (entity.getPersistentDataContainer().has(plugin.repairLootEntity, PersistentDataType.INTEGER)) {
-            EntityEquipment equipment = ((Mob) entity).getEquipment();
-            String type = entity.getType().name();
+        if (spawnerType == null && killer != null && !onlySpawnerLootCanRepair) spawnerType = entity.getType();
+        if (spawnerType != null) {
+            RepairLoot loot = repairLoot.get(spawnerType);
+            if (loot == null) return;
+            EquipmentSnapshot equipment = new EquipmentSnapshot(((Mob) entity).getEquipment());
 
             for (ItemStack drop : event.getDrops()) {
                 // Don't want equipment to be categorized as mob spawner repair loot.
-                if (isSimilarToEquipment(equipment, drop)) continue;
+                if (!equipment.isEquipped(drop)) loot.tag(drop);
+            }
+        }
+    }
 
-                ItemMeta meta = drop.getItemMeta();
-                if (meta == null) continue;
+    /**
+     * Tags the loot as repair loot of the spawner type, like the drops of mobs spawned by spawners.
+     *
+     * @param spawnerType The type of the spawner that produced the loot.
+     * @param drops       The loot to tag.
+     */
+    public void tagRepairLoot(@NotNull EntityType spawnerType, @NotNull Collection<ItemStack> drops) {
+        RepairLoot loot = repairLoot.get(spawnerType);
+        if (loot == null) return;
+        for (ItemStack drop : drops) loot.tag(drop);
+    }
 
-                meta.getPersistentDataContainer().set(plugin.repairLoot, PersistentDataType.STRING, type);
+    /**
+     * The items a mob had equipped when it died, read once so each drop is compared without cloning the equipment
+     * again.
+     */
+    private static final class EquipmentSnapshot {
+        private final @NotNull Material[] materials = new Material[6];
+        private final @NotNull ItemStack[] items = new ItemStack[6];
+        private int size = 0;
+
+        private EquipmentSnapshot(@Nullable EntityEquipment equipment) {
+            if (equipment == null) return;
+            add(equipment.getHelmet());
+            add(equipment.getChestplate());
+            add(equipment.getLeggings());
+            add(equipment.getBoots());
+            add(equipment.getItemInMainHand());
+            add(equipment.getItemInOffHand());
+        }
 
-                String[] lines = SilkTouchPlusUtil.separateLines(SilkTouchPlus.getLanguage().getColored("Repair.Loot Lore")
-                        .replace("<type>", type).replace("<health>", Double.toString(clickListener.lootRepairAmount))
-                        .replace("<health_percentage>", clickListener.formattedLootRepairAmount));
-                if (lines.length != 0) meta.setLore(Arrays.asList());
-                drop.setItemMeta(meta);
+        private void add(@Nullable ItemStack item) {
+            if (item == null || item.getType().isAir()) return;
+            materials[size] = item.getType();
+            items[size++] = item;
+        }
+
+        private boolean isEquipped(@NotNull ItemStack drop) {
+            Material material = drop.getType();
+
+            for (int i = 0; i < size; i++) {
+                // Only items of the same material can be similar.
+                if (materials[i] == material && drop.isSimilar(items[i])) return true;
             }
+            return false;
         }
     }
 
-    private boolean isSimilarToEquipment(@Nullable EntityEquipment equipment, @NotNull ItemStack drop) {
-        if (equipment == null) return false;
-        return drop.isSimilar(equipment.getBoots()) || drop.isSimilar(equipment.getLeggings()) || drop.isSimilar(equipment.getChestplate())
-                || drop.isSimilar(equipment.getHelmet()) || drop.isSimilar(equipment.getItemInMainHand()) || drop.isSimilar(equipment.getItemInOffHand());
+    private final class RepairLoot {
+        private final @NotNull String type;
+        private final @Nullable List<String> lore;
+        /**
+         * The tagged meta of drops of each material that had no meta.
+         */
+        private final @NotNull EnumMap<Material, ItemMeta> metas = new EnumMap<>(Material.class);
+
+        private RepairLoot(@NotNull String type, @Nullable List<String> lore) {
+            this.type = type;
+            this.lore = lore;
+        }
+
+        private void tag(@NotNull ItemStack drop) {
+            if (drop.hasItemMeta()) {
+                ItemMeta meta = drop.getItemMeta();
+                if (meta == null) return;
+                tag(meta);
+                drop.setItemMeta(meta);
+                return;
+            }
+
+            // Plain drops of the same material all get the same meta, which is copied when set.
+            ItemMeta meta = metas.get(drop.getType());
+            if (meta == null) {
+                meta = drop.getItemMeta();
+                if (meta == null) return;
+                tag(meta);
+                metas.put(drop.getType(), meta);
+            }
+            drop.setItemMeta(meta);
+        }
+
+        private void tag(@NotNull ItemMeta meta) {
+            meta.getPersistentDataContainer().set(plugin.repairLoot, PersistentDataType.STRING, type);
+            if (lore != null) meta.setLore(lore);
+        }
     }
 }
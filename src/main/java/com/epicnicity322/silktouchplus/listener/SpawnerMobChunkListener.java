@@ -0,0 +1,49 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.listener;
+
+import com.epicnicity322.silktouchplus.SilkTouchPlus;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Keeps the spawner mobs of entities that load and unload separately from their chunks. Must only be registered in
+ * 1.17 and above, where these events exist.
+ */
+public final class SpawnerMobChunkListener implements Listener {
+    private final @NotNull SilkTouchPlus plugin;
+
+    public SpawnerMobChunkListener(@NotNull SilkTouchPlus plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesLoad(EntitiesLoadEvent event) {
+        plugin.getSpawnerMobs().restore(event.getEntities());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesUnload(EntitiesUnloadEvent event) {
+        plugin.getSpawnerMobs().persist(event.getEntities());
+    }
+}
@@ -18,36 +18,39 @@
 
 package com.epicnicity322.silktouchplus.listener;
 
-import com.epicnicity322.epicpluginlib.bukkit.reflection.ReflectionUtil;
-import com.epicnicity322.epicpluginlib.bukkit.reflection.type.PackageType;
-import com.epicnicity322.epicpluginlib.core.util.ObjectUtils;
 import com.epicnicity322.silktouchplus.SilkTouchPlus;
-import com.epicnicity322.silktouchplus.util.HologramHandler;
+import com.epicnicity322.silktouchplus.render.SpawnerRenderer;
+import com.epicnicity322.silktouchplus.util.HologramUpdater;
+import com.epicnicity322.silktouchplus.util.SilkTouchPlusUtil;
+import com.epicnicity322.silktouchplus.util.SpawnPolicy;
+import com.epicnicity322.silktouchplus.util.SpawnerMobRegistry;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.block.CreatureSpawner;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
-import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.SpawnerSpawnEvent;
-import org.bukkit.persistence.PersistentDataContainer;
-import org.bukkit.persistence.PersistentDataType;
 import org.jetbrains.annotations.NotNull;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 public final class SpawnerSpawnListener implements Listener {
-    private static final @NotNull HashSet<RenderKey> healthRenderingSpawners = new HashSet<>();
+    private static final @NotNull SpawnerRenderer renderer = new SpawnerRenderer();
     private final @NotNull SilkTouchPlus plugin;
-    private @NotNull Collection<EntityType> spawnWhitelist = Collections.emptySet();
-    private double spawnDamage = 0.0005;
+    private final @NotNull MobStackListener mobStack;
+    private @NotNull SpawnPolicy spawnPolicy = new SpawnPolicy.Builder().build();
 
-    public SpawnerSpawnListener(@NotNull SilkTouchPlus plugin) {
+    public SpawnerSpawnListener(@NotNull SilkTouchPlus plugin, @NotNull MobStackListener mobStack) {
         this.plugin = plugin;
+        this.mobStack = mobStack;
+    }
+
+    public static @NotNull SpawnerRenderer getRenderer() {
+        return renderer;
     }
 
     /**
@@ -60,126 +63,134 @@ public final class SpawnerSpawnListener implements Listener {
         World world = location.getWorld();
         if (world == null) throw new IllegalArgumentException("Location does not specify a world!");
         if (health < 0.0) health = 0.0;
-        HologramHandler hologramHandler = SilkTouchPlus.getHologramHandler();
-        if (hologramHandler != null) hologramHandler.createHologram(spawner, health);
-        if (health > 1.0) health = 1.0;
-        healthRenderingSpawners.add(new RenderKey(world, location.getBlockX(), location.getBlockY(), location.getBlockZ(), (int) (9.0 - (health * 10.0))));
+        HologramUpdater hologramUpdater = SilkTouchPlus.getHologramUpdater();
+        if (hologramUpdater != null) hologramUpdater.markDirty(spawner, health);
+
+        renderer.getRegistry().set(world, location.getBlockX(), location.getBlockY(), location.getBlockZ(), SilkTouchPlusUtil.animationStage(health));
     }
 
     public static void removeSpawnerRender(@NotNull Location location) {
-        healthRenderingSpawners.removeIf(key -> key.blockX == location.getBlockX()
-                && key.blockY == location.getBlockY()
-                && key.blockZ == location.getBlockZ()
-                && key.world.equals(location.getWorld()));
-        HologramHandler hologramHandler = SilkTouchPlus.getHologramHandler();
-        if (hologramHandler != null) hologramHandler.removeHologram(location);
+        World world = location.getWorld();
+        if (world != null) renderer.getRegistry().remove(world, location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        HologramUpdater hologramUpdater = SilkTouchPlus.getHologramUpdater();
+        if (hologramUpdater != null) hologramUpdater.remove(location);
+    }
+
+    /**
+     * Removes the damage animation and hologram of all spawners in this chunk.
+     *
+     * @param chunk The chunk to remove the spawners.
+     */
+    public static void removeSpawnerRenders(@NotNull Chunk chunk) {
+        renderer.getRegistry().removeChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        HologramUpdater hologramUpdater = SilkTouchPlus.getHologramUpdater();
+        if (hologramUpdater != null) hologramUpdater.removeChunk(chunk);
+    }
+
+    /**
+     * Removes the damage animation and hologram of all spawners in this world.
+     *
+     * @param world The world to remove the spawners.
+     */
+    public static void removeSpawnerRenders(@NotNull World world) {
+        renderer.getRegistry().removeWorld(world);
+        HologramUpdater hologramUpdater = SilkTouchPlus.getHologramUpdater();
+        if (hologramUpdater != null) hologramUpdater.removeWorld(world);
     }
 
+    /**
+     * Publishes the render changes made on this tick, so they're seen by {@link #renderHealth()}. Must be called on
+     * the main thread.
+     */
+    public static void publishRenders() {
+        renderer.getRegistry().publish();
+    }
+
+    /**
+     * Sends the damage animation changes of the spawners to the next slice of players. Can be called asynchronously,
+     * every tick.
+     */
     public static void renderHealth() {
-        for (RenderKey key : healthRenderingSpawners) {
-            Object packetBreak = key.packetBreak();
-            for (Player player : key.world.getPlayers()) ReflectionUtil.sendPacket(player, packetBreak);
-        }
+        renderer.render();
     }
 
-    public void setSpawnWhitelist(@NotNull Collection<EntityType> spawnWhitelist) {
-        this.spawnWhitelist = spawnWhitelist;
+    /**
+     * Applies the spawn damage spawners took this tick, updating the render and hologram of the spawners that visibly
+     * changed, then publishes the render changes and flushes the holograms due this tick. Runs every tick.
+     */
+    public void applySpawnDamage() {
+        plugin.getHealthCache().applyPendingDamage((spawner, health) -> addSpawnerRender(spawner.getLocation(), spawner, health));
+        publishRenders();
+        HologramUpdater hologramUpdater = SilkTouchPlus.getHologramUpdater();
+        if (hologramUpdater != null) hologramUpdater.flush();
     }
 
-    public void setSpawnDamage(double spawnDamage) {
-        this.spawnDamage = spawnDamage;
+    public void setSpawnPolicy(@NotNull SpawnPolicy spawnPolicy) {
+        this.spawnPolicy = spawnPolicy;
     }
 
     @EventHandler(priority = EventPriority.LOW, ignoreCancelled = true)
     public void onSpawnerSpawn(SpawnerSpawnEvent event) {
-        if (!spawnWhitelist.contains(event.getEntityType())) {
+        CreatureSpawner spawner = event.getSpawner();
+        double spawnDamage = spawnPolicy.getSpawnDamage(spawner.getWorld(), event.getEntityType());
+
+        if (SpawnPolicy.isDenied(spawnDamage)) {
             event.setCancelled(true);
             return;
         }
-        CreatureSpawner spawner = event.getSpawner();
-        PersistentDataContainer container = spawner.getPersistentDataContainer();
-        double currentHealth = container.getOrDefault(plugin.spawnerHealth, PersistentDataType.DOUBLE, 1.0);
-        double newHealth;
-
-        if (currentHealth > 0.0) {
-            newHealth = currentHealth - spawnDamage;
-            if (newHealth < 0.0) newHealth = 0.0;
-        } else {
+        // Damage is applied at the end of the tick, in #applySpawnDamage().
+        if (!plugin.getHealthCache().damage(spawner, spawnDamage)) {
             event.setCancelled(true);
-            return;
         }
-
-        container.set(plugin.spawnerHealth, PersistentDataType.DOUBLE, newHealth);
-        spawner.update();
-        addSpawnerRender(spawner.getLocation(), spawner, newHealth);
-        // Tagging entity as mob spawner entity, so when it dies, its drops can be tagged as repairable for this type of
-        //spawner.
-        event.getEntity().getPersistentDataContainer().set(plugin.repairLootEntity, PersistentDataType.INTEGER, 1);
     }
 
-    private static final class RenderKey {
-        private static final @NotNull Random random = new Random();
-        private static final @NotNull Class<?> packetClass = Objects.requireNonNull(ObjectUtils.getOrDefault(ReflectionUtil.getClass("net.minecraft.network.protocol.game.PacketPlayOutBlockBreakAnimation"), ReflectionUtil.getClass("PacketPlayOutBlockBreakAnimation", PackageType.MINECRAFT_SERVER)));
-        private static final @NotNull Class<?> blockPositionClass = Objects.requireNonNull(ObjectUtils.getOrDefault(ReflectionUtil.getClass("net.minecraft.core.BlockPosition"), ReflectionUtil.getClass("BlockPosition", PackageType.MINECRAFT_SERVER)));
-        private static final @NotNull Constructor<?> packetConstructor = Objects.requireNonNull(ReflectionUtil.getConstructor(packetClass, int.class, blockPositionClass, int.class));
-        private static final @NotNull Constructor<?> blockPositionConstructor = Objects.requireNonNull(ReflectionUtil.getConstructor(blockPositionClass, int.class, int.class, int.class));
-        private final @NotNull World world;
-        private final int blockX;
-        private final int blockY;
-        private final int blockZ;
-        private final int animationProgress;
-        private int entityId = 0;
-        private Object blockPosition;
-        private Object packetBreak;
-
-        public RenderKey(@NotNull World world, int blockX, int blockY, int blockZ, int animationProgress) {
-            this.world = world;
-            this.blockX = blockX;
-            this.blockY = blockY;
-            this.blockZ = blockZ;
-            this.animationProgress = animationProgress;
-        }
-
-        private int entityId() {
-            if (entityId == 0) {
-                entityId = random.nextInt();
-            }
-            return entityId;
-        }
-
-        private @NotNull Object blockPosition() throws InvocationTargetException, InstantiationException, IllegalAccessException {
-            if (blockPosition == null) {
-                blockPosition = blockPositionConstructor.newInstance(blockX, blockY, blockZ);
-            }
-            return blockPosition;
-        }
-
-        private @NotNull Object packetBreak() {
-            if (packetBreak == null) {
-                try {
-                    packetBreak = packetConstructor.newInstance(entityId(), blockPosition(), animationProgress);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
+    /**
+     * Stacked spawners spawn one mob per spawner in the same event, as long as the spawner's max nearby entities is not
+     * reached. The damage taken is already shared by the stack's health.
+     * <p>
+     * Runs after mob stacking and virtual spawning, which are registered first and take care of stacked spawners by
+     * themselves.
+     */
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onSpawnerSpawnHighest(SpawnerSpawnEvent event) {
+        CreatureSpawner spawner = event.getSpawner();
+        int stack = plugin.getHealthCache().getStack(spawner);
+        if (stack == 1) return;
+        Entity entity = event.getEntity();
+        // Mobs starting a mob stack already count the mobs of stacked spawners.
+        if (mobStack.isStartingStack(entity)) return;
+        SpawnerMobRegistry spawnerMobs = plugin.getSpawnerMobs();
+
+        EntityType type = event.getEntityType();
+        World world = spawner.getWorld();
+        int range = spawner.getSpawnRange();
+        Location center = spawner.getLocation().add(0.5, 0.5, 0.5);
+        // The mob of this event is not in the world yet.
+        int nearby = world.getNearbyEntities(center, range + 0.5, range + 0.5, range + 0.5, nearbyEntity -> nearbyEntity.getType() == type).size() + 1;
+        int extras = Math.min(stack - 1, spawner.getMaxNearbyEntities() - nearby);
+        if (extras <= 0) return;
+
+        EntityType spawnerType = spawner.getSpawnedType();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int i = 0; i < extras; i++) {
+            // Spread like vanilla spawns, falling back to the spawned mob's location when the spot is blocked.
+            Location location = center.clone().add((random.nextDouble() - random.nextDouble()) * range, random.nextInt(3) - 1.5,
+                    (random.nextDouble() - random.nextDouble()) * range);
+            if (!location.getBlock().isPassable() || !location.clone().add(0, 1, 0).getBlock().isPassable()) {
+                location = entity.getLocation();
             }
-            return packetBreak;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            RenderKey renderKey = (RenderKey) o;
-            return animationProgress == renderKey.animationProgress &&
-                    blockX == renderKey.blockX &&
-                    blockY == renderKey.blockY &&
-                    blockZ == renderKey.blockZ &&
-                    world.equals(renderKey.world);
+            Entity extra = world.spawnEntity(location, type);
+            if (extra.isValid()) spawnerMobs.register(extra, spawnerType);
         }
+    }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(world, blockX, blockY, blockZ, animationProgress);
-        }
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSpawnerSpawnMonitor(SpawnerSpawnEvent event) {
+        // Remembering entity as mob spawner entity, so when it dies, its drops can be tagged as repairable for this
+        //type of spawner.
+        SpawnerMobRegistry spawnerMobs = plugin.getSpawnerMobs();
+        Entity entity = event.getEntity();
+        if (spawnerMobs.getStack(entity) == 0) spawnerMobs.register(entity, event.getSpawner().getSpawnedType());
     }
 }
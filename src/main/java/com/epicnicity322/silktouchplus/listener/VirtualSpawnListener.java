@@ -0,0 +1,155 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.listener;
+
+import com.epicnicity322.silktouchplus.SilkTouchPlus;
+import com.epicnicity322.silktouchplus.util.SilkTouchPlusUtil;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Container;
+import org.bukkit.block.CreatureSpawner;
+import org.bukkit.entity.Animals;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Mob;
+import org.bukkit.entity.Monster;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.SpawnerSpawnEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.loot.LootContext;
+import org.bukkit.loot.LootTable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Spawners of virtual spawning types don't spawn their mobs. The loot and experience the mobs would drop when killed
+ * are produced right away, and put in a container next to the spawner or kept in the spawner until a player collects
+ * them.
+ */
+public final class VirtualSpawnListener implements Listener {
+    private static final @NotNull BlockFace[] CONTAINER_FACES = {BlockFace.DOWN, BlockFace.UP, BlockFace.NORTH, BlockFace.SOUTH, BlockFace.EAST, BlockFace.WEST};
+    private final @NotNull SilkTouchPlus plugin;
+    private final @NotNull SpawnerEntityDeathListener deathListener;
+    /**
+     * Materials whose block state is a {@link Container}, so the states of other blocks next to spawners are never
+     * created.
+     */
+    private static final @NotNull EnumSet<Material> CONTAINER_MATERIALS = containerMaterials();
+    private @NotNull EnumSet<EntityType> types = EnumSet.noneOf(EntityType.class);
+
+    public VirtualSpawnListener(@NotNull SilkTouchPlus plugin, @NotNull SpawnerEntityDeathListener deathListener) {
+        this.plugin = plugin;
+        this.deathListener = deathListener;
+    }
+
+    private static @NotNull EnumSet<Material> containerMaterials() {
+        EnumSet<Material> materials = EnumSet.of(Material.CHEST, Material.TRAPPED_CHEST, Material.BARREL, Material.HOPPER,
+                Material.DROPPER, Material.DISPENSER, Material.FURNACE, Material.BLAST_FURNACE, Material.SMOKER,
+                Material.BREWING_STAND);
+        for (Material material : Material.values()) {
+            if (material.name().endsWith("SHULKER_BOX")) materials.add(material);
+        }
+        return materials;
+    }
+
+    /**
+     * Approximates the experience vanilla mobs drop when killed by a player.
+     */
+    private static int experience(@NotNull Entity entity, @NotNull ThreadLocalRandom random) {
+        if (entity instanceof Monster) return 5;
+        if (entity instanceof Animals) return 1 + random.nextInt(3);
+        return 0;
+    }
+
+    private static @Nullable Player nearestPlayer(@NotNull World world, @NotNull Location location, int range) {
+        Player nearest = null;
+        double nearestDistance = range * range;
+
+        // Only the players within the activation range of the spawner are looked at.
+        for (Entity player : world.getNearbyEntities(location, range, range, range, entity -> entity instanceof Player)) {
+            double distance = player.getLocation().distanceSquared(location);
+            if (distance <= nearestDistance) {
+                nearest = (Player) player;
+                nearestDistance = distance;
+            }
+        }
+        return nearest;
+    }
+
+    public void setTypes(@NotNull Collection<EntityType> types) {
+        this.types = types.isEmpty() ? EnumSet.noneOf(EntityType.class) : EnumSet.copyOf(types);
+    }
+
+    @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
+    public void onSpawnerSpawn(SpawnerSpawnEvent event) {
+        if (!types.contains(event.getEntityType())) return;
+        Entity entity = event.getEntity();
+        if (!(entity instanceof Mob)) return;
+
+        // The spawn damage was already queued, the mob is just never added to the world.
+        event.setCancelled(true);
+
+        CreatureSpawner spawner = event.getSpawner();
+        // Otherwise the spawner tries again every tick, producing loot each time.
+        SilkTouchPlusUtil.resetDelay(spawner);
+        Location location = entity.getLocation();
+        // Loot that requires the mob to be killed by a player, like blaze rods, is given by the player activating the
+        //spawner.
+        Player killer = nearestPlayer(entity.getWorld(), location, spawner.getRequiredPlayerRange());
+        LootTable lootTable = ((Mob) entity).getLootTable();
+        LootContext context = new LootContext.Builder(location).lootedEntity(entity).killer(killer).build();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        ArrayList<ItemStack> loot = new ArrayList<>();
+        int experience = 0;
+
+        // Stacked spawners produce the loot of one mob per spawner.
+        for (int i = plugin.getHealthCache().getStack(spawner); i > 0; i--) {
+            if (lootTable != null) loot.addAll(lootTable.populateLoot(random, context));
+            if (killer != null) experience += experience(entity, random);
+        }
+
+        deathListener.tagRepairLoot(spawner.getSpawnedType(), loot);
+        Block block = spawner.getBlock();
+
+        for (BlockFace face : CONTAINER_FACES) {
+            if (loot.isEmpty()) break;
+            Block relative = block.getRelative(face);
+            if (!CONTAINER_MATERIALS.contains(relative.getType())) continue;
+            BlockState state = relative.getState();
+            if (!(state instanceof Container)) continue;
+            Collection<ItemStack> left = ((Container) state).getInventory().addItem(loot.toArray(new ItemStack[0])).values();
+            loot.clear();
+            loot.addAll(left);
+        }
+
+        plugin.getLootBuffer().deposit(spawner, loot, experience);
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.packet;
+
+import com.epicnicity322.epicpluginlib.bukkit.reflection.ReflectionUtil;
+import com.epicnicity322.epicpluginlib.bukkit.reflection.type.PackageType;
+import com.epicnicity322.epicpluginlib.core.util.ObjectUtils;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Objects;
+
+/**
+ * A {@link PacketAdapter} that finds the server classes by name once, and binds them into method handles so no
+ * reflective lookup happens when packets are created or sent.
+ */
+final class MethodHandlePacketAdapter implements PacketAdapter {
+    private final @NotNull MethodHandle blockPositionConstructor;
+    private final @NotNull MethodHandle blockBreakConstructor;
+    private final @NotNull MethodHandle sendPacket;
+    private final @Nullable VirtualEntityHandles virtualEntities;
+
+    MethodHandlePacketAdapter() throws ReflectiveOperationException {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Class<?> blockPositionClass = nmsClass("net.minecraft.core.BlockPosition", "BlockPosition");
+        Class<?> blockBreakClass = nmsClass("net.minecraft.network.protocol.game.PacketPlayOutBlockBreakAnimation", "PacketPlayOutBlockBreakAnimation");
+        Class<?> packetClass = nmsClass("net.minecraft.network.protocol.Packet", "Packet");
+        Class<?> connectionClass = nmsClass("net.minecraft.server.network.PlayerConnection", "PlayerConnection");
+        Class<?> craftPlayerClass = Class.forName(Bukkit.getServer().getClass().getPackage().getName() + ".entity.CraftPlayer");
+
+        blockPositionConstructor = lookup.findConstructor(blockPositionClass, MethodType.methodType(void.class, int.class, int.class, int.class))
+                .asType(MethodType.methodType(Object.class, int.class, int.class, int.class));
+        blockBreakConstructor = lookup.findConstructor(blockBreakClass, MethodType.methodType(void.class, int.class, blockPositionClass, int.class))
+                .asType(MethodType.methodType(Object.class, int.class, Object.class, int.class));
+
+        // CraftPlayer#getHandle() -> EntityPlayer#playerConnection -> PlayerConnection#sendPacket(Packet)
+        Method getHandle = craftPlayerClass.getMethod("getHandle");
+        Field connectionField = findField(getHandle.getReturnType(), connectionClass);
+        connectionField.setAccessible(true);
+        MethodHandle connection = MethodHandles.filterReturnValue(lookup.unreflect(getHandle), lookup.unreflectGetter(connectionField));
+        MethodHandle send = lookup.unreflect(findSendMethod(connectionClass, packetClass));
+
+        sendPacket = MethodHandles.filterArguments(send, 0, connection)
+                .asType(MethodType.methodType(void.class, Player.class, Object.class));
+
+        // Virtual entities are optional, block break animations still work without them.
+        VirtualEntityHandles virtualEntities;
+        try {
+            virtualEntities = new VirtualEntityHandles(lookup);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            virtualEntities = null;
+        }
+        this.virtualEntities = virtualEntities;
+    }
+
+    private static @NotNull Class<?> nmsClass(@NotNull String name, @NotNull String legacyName) throws ClassNotFoundException {
+        Class<?> clazz = ObjectUtils.getOrDefault(ReflectionUtil.getClass(name), ReflectionUtil.getClass(legacyName, PackageType.MINECRAFT_SERVER));
+        if (clazz == null) throw new ClassNotFoundException(name);
+        return clazz;
+    }
+
+    private static @NotNull Field findField(@NotNull Class<?> owner, @NotNull Class<?> type) throws NoSuchFieldException {
+        for (Class<?> clazz = owner; clazz != null; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (field.getType() == type && !Modifier.isStatic(field.getModifiers())) return field;
+            }
+        }
+        throw new NoSuchFieldException("No field of type " + type.getName() + " in " + owner.getName());
+    }
+
+    private static @NotNull Method findSendMethod(@NotNull Class<?> connectionClass, @NotNull Class<?> packetClass) throws NoSuchMethodException {
+        Method found = null;
+
+        for (Method method : connectionClass.getMethods()) {
+            if (method.getParameterCount() != 1 || method.getParameterTypes()[0] != packetClass || method.getReturnType() != void.class) {
+                continue;
+            }
+            // Older versions have the method named, obfuscated versions have a single match.
+            if (method.getName().equals("sendPacket")) return method;
+            if (found == null) found = method;
+        }
+        if (found == null) throw new NoSuchMethodException("No send packet method in " + connectionClass.getName());
+        return found;
+    }
+
+    @Override
+    public @NotNull Object createBlockBreakPacket(int entityId, int x, int y, int z, int stage) {
+        try {
+            Object blockPosition = (Object) blockPositionConstructor.invokeExact(x, y, z);
+            return Objects.requireNonNull((Object) blockBreakConstructor.invokeExact(entityId, blockPosition, stage));
+        } catch (Throwable t) {
+            throw new IllegalStateException("Could not create block break packet", t);
+        }
+    }
+
+    @Override
+    public boolean supportsVirtualEntities() {
+        return virtualEntities != null;
+    }
+
+    private @NotNull VirtualEntityHandles virtualEntities() {
+        if (virtualEntities == null) throw new UnsupportedOperationException("Virtual entities are not supported in this version.");
+        return virtualEntities;
+    }
+
+    @Override
+    public @NotNull ArmorStand createVirtualArmorStand(@NotNull Location location) {
+        VirtualEntityHandles handles = virtualEntities();
+        World world = Objects.requireNonNull(location.getWorld(), "Location does not specify a world!");
+        try {
+            Object nmsWorld = (Object) handles.worldHandle.invokeExact((Object) world);
+            Object armorStand = (Object) handles.armorStandConstructor.invokeExact(nmsWorld, location.getX(), location.getY(), location.getZ());
+            return (ArmorStand) (Entity) handles.bukkitEntity.invokeExact(armorStand);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Could not create virtual armor stand", t);
+        }
+    }
+
+    @Override
+    public @NotNull Object createSpawnPacket(@NotNull Entity entity) {
+        VirtualEntityHandles handles = virtualEntities();
+        try {
+            return Objects.requireNonNull((Object) handles.spawnConstructor.invokeExact((Object) handles.entityHandle.invokeExact(entity)));
+        } catch (Throwable t) {
+            throw new IllegalStateException("Could not create spawn packet", t);
+        }
+    }
+
+    @Override
+    public @NotNull Object createMetadataPacket(@NotNull Entity entity, boolean all) {
+        VirtualEntityHandles handles = virtualEntities();
+        try {
+            Object dataWatcher = (Object) handles.dataWatcher.invokeExact((Object) handles.entityHandle.invokeExact(entity));
+            return Objects.requireNonNull((Object) handles.metadataConstructor.invokeExact(entity.getEntityId(), dataWatcher, all));
+        } catch (Throwable t) {
+            throw new IllegalStateException("Could not create metadata packet", t);
+        }
+    }
+
+    @Override
+    public @NotNull Object createDestroyPacket(@NotNull int... entityIds) {
+        VirtualEntityHandles handles = virtualEntities();
+        try {
+            return Objects.requireNonNull((Object) handles.destroyConstructor.invokeExact(entityIds));
+        } catch (Throwable t) {
+            throw new IllegalStateException("Could not create destroy packet", t);
+        }
+    }
+
+    @Override
+    public void sendPacket(@NotNull Player player, @NotNull Object packet) {
+        try {
+            sendPacket.invokeExact(player, packet);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Could not send packet to " + player.getName(), t);
+        }
+    }
+
+    private static final class VirtualEntityHandles {
+        private final @NotNull MethodHandle worldHandle;
+        private final @NotNull MethodHandle armorStandConstructor;
+        private final @NotNull MethodHandle bukkitEntity;
+        private final @NotNull MethodHandle entityHandle;
+        private final @NotNull MethodHandle dataWatcher;
+        private final @NotNull MethodHandle spawnConstructor;
+        private final @NotNull MethodHandle metadataConstructor;
+        private final @NotNull MethodHandle destroyConstructor;
+
+        private VirtualEntityHandles(@NotNull MethodHandles.Lookup lookup) throws ReflectiveOperationException {
+            String craftPackage = Bukkit.getServer().getClass().getPackage().getName();
+            Class<?> craftWorldClass = Class.forName(craftPackage + ".CraftWorld");
+            Class<?> craftEntityClass = Class.forName(craftPackage + ".entity.CraftEntity");
+            Class<?> worldClass = nmsClass("net.minecraft.world.level.World", "World");
+            Class<?> entityClass = nmsClass("net.minecraft.world.entity.Entity", "Entity");
+            Class<?> armorStandClass = nmsClass("net.minecraft.world.entity.decoration.EntityArmorStand", "EntityArmorStand");
+            Class<?> dataWatcherClass = nmsClass("net.minecraft.network.syncher.DataWatcher", "DataWatcher");
+            // Living entities have their own spawn packet until 1.19.
+            Class<?> spawnLivingClass = ObjectUtils.getOrDefault(ReflectionUtil.getClass("net.minecraft.network.protocol.game.PacketPlayOutSpawnEntityLiving"),
+                    ReflectionUtil.getClass("PacketPlayOutSpawnEntityLiving", PackageType.MINECRAFT_SERVER));
+            Class<?> spawnClass = spawnLivingClass != null ? spawnLivingClass : nmsClass("net.minecraft.network.protocol.game.PacketPlayOutSpawnEntity", "PacketPlayOutSpawnEntity");
+            Class<?> spawnedClass = spawnLivingClass != null ? nmsClass("net.minecraft.world.entity.EntityLiving", "EntityLiving") : entityClass;
+            Class<?> metadataClass = nmsClass("net.minecraft.network.protocol.game.PacketPlayOutEntityMetadata", "PacketPlayOutEntityMetadata");
+            Class<?> destroyClass = nmsClass("net.minecraft.network.protocol.game.PacketPlayOutEntityDestroy", "PacketPlayOutEntityDestroy");
+            MethodType toObject = MethodType.methodType(Object.class, Object.class);
+
+            // CraftWorld#getHandle() -> new EntityArmorStand(World, x, y, z) -> Entity#getBukkitEntity()
+            worldHandle = lookup.unreflect(craftWorldClass.getMethod("getHandle")).asType(toObject);
+            armorStandConstructor = lookup.findConstructor(armorStandClass, MethodType.methodType(void.class, worldClass, double.class, double.class, double.class))
+                    .asType(MethodType.methodType(Object.class, Object.class, double.class, double.class, double.class));
+            bukkitEntity = lookup.unreflect(entityClass.getMethod("getBukkitEntity")).asType(MethodType.methodType(Entity.class, Object.class));
+            entityHandle = lookup.unreflect(craftEntityClass.getMethod("getHandle")).asType(MethodType.methodType(Object.class, Entity.class));
+            dataWatcher = lookup.unreflect(findGetter(entityClass, dataWatcherClass)).asType(toObject);
+            spawnConstructor = lookup.findConstructor(spawnClass, MethodType.methodType(void.class, spawnedClass)).asType(toObject);
+            metadataConstructor = lookup.findConstructor(metadataClass, MethodType.methodType(void.class, int.class, dataWatcherClass, boolean.class))
+                    .asType(MethodType.methodType(Object.class, int.class, Object.class, boolean.class));
+            destroyConstructor = lookup.findConstructor(destroyClass, MethodType.methodType(void.class, int[].class))
+                    .asType(MethodType.methodType(Object.class, int[].class));
+        }
+
+        private static @NotNull Method findGetter(@NotNull Class<?> owner, @NotNull Class<?> type) throws NoSuchMethodException {
+            for (Method method : owner.getMethods()) {
+                if (method.getParameterCount() == 0 && method.getReturnType() == type && !Modifier.isStatic(method.getModifiers())) {
+                    return method;
+                }
+            }
+            throw new NoSuchMethodException("No getter of type " + type.getName() + " in " + owner.getName());
+        }
+    }
+}
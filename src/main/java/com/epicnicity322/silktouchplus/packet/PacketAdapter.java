@@ -0,0 +1,96 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.packet;
+
+import org.bukkit.Location;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Creates and sends the server packets SilkTouchPlus needs, hiding the differences between server versions.
+ */
+public interface PacketAdapter {
+    /**
+     * Selects the adapter for the running server version. Everything the adapter needs is resolved here, so an
+     * unsupported version fails once at startup instead of on every packet.
+     *
+     * @return The packet adapter for this server.
+     * @throws UnsupportedOperationException If this server version is not supported.
+     */
+    static @NotNull PacketAdapter create() {
+        try {
+            return new MethodHandlePacketAdapter();
+        } catch (Throwable t) {
+            throw new UnsupportedOperationException("Could not find the packet classes of this server version.", t);
+        }
+    }
+
+    /**
+     * Creates a block break animation packet.
+     *
+     * @param entityId The ID of the breaker. Each animation shown at the same time must have a different ID.
+     * @param stage    The animation stage, from 0 to 9. Any other value removes the animation.
+     * @return The packet, ready to be sent with {@link #sendPacket(Player, Object)}.
+     */
+    @NotNull Object createBlockBreakPacket(int entityId, int x, int y, int z, int stage);
+
+    /**
+     * @return Whether this adapter can create virtual entities and their packets.
+     */
+    boolean supportsVirtualEntities();
+
+    /**
+     * Creates an armor stand that is not added to the world, so it only exists for the players it's sent to. It can be
+     * configured with the Bukkit API before its packets are created.
+     *
+     * @param location The location of the armor stand.
+     * @return The virtual armor stand.
+     * @throws UnsupportedOperationException If this adapter does not {@link #supportsVirtualEntities()}.
+     */
+    @NotNull ArmorStand createVirtualArmorStand(@NotNull Location location);
+
+    /**
+     * @param entity A virtual entity created by this adapter.
+     * @return The packet that spawns the entity for a player.
+     * @throws UnsupportedOperationException If this adapter does not {@link #supportsVirtualEntities()}.
+     */
+    @NotNull Object createSpawnPacket(@NotNull Entity entity);
+
+    /**
+     * Creates the packet with the metadata of the entity. When only changed metadata is included, the changes are
+     * marked as sent, so the same packet should be sent to every player seeing the entity.
+     *
+     * @param entity A virtual entity created by this adapter.
+     * @param all    Whether to include all metadata, or only what changed since the last packet.
+     * @return The metadata packet.
+     * @throws UnsupportedOperationException If this adapter does not {@link #supportsVirtualEntities()}.
+     */
+    @NotNull Object createMetadataPacket(@NotNull Entity entity, boolean all);
+
+    /**
+     * @param entityIds The IDs of the entities to remove from a player's view.
+     * @return The packet that destroys the entities.
+     * @throws UnsupportedOperationException If this adapter does not {@link #supportsVirtualEntities()}.
+     */
+    @NotNull Object createDestroyPacket(@NotNull int... entityIds);
+
+    void sendPacket(@NotNull Player player, @NotNull Object packet);
+}
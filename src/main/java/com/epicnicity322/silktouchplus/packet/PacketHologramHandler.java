@@ -0,0 +1,175 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.packet;
+
+import com.epicnicity322.silktouchplus.util.BlockMap;
+import com.epicnicity322.silktouchplus.util.HologramHandler;
+import com.epicnicity322.silktouchplus.util.LongHashMap;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.ArmorStand;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Holograms made of virtual armor stands, which exist only in the clients of the players they're shown to. No entity
+ * is added to the server, and no hologram plugin is needed.
+ */
+public final class PacketHologramHandler implements HologramHandler {
+    private static final @NotNull Set<Capability> capabilities = Collections.unmodifiableSet(EnumSet.of(Capability.REMOVE_CHUNK, Capability.REMOVE_WORLD));
+    private static final double LINE_HEIGHT = 0.25;
+    private final @NotNull PacketAdapter adapter;
+    private final @NotNull BlockMap<VirtualHologram> holograms = new BlockMap<>();
+    private boolean enabled = true;
+
+    /**
+     * @param adapter The adapter used to create the virtual armor stands and their packets.
+     * @throws IllegalArgumentException If the adapter does not {@link PacketAdapter#supportsVirtualEntities()}.
+     */
+    public PacketHologramHandler(@NotNull PacketAdapter adapter) {
+        if (!adapter.supportsVirtualEntities())
+            throw new IllegalArgumentException("Packet adapter does not support virtual entities.");
+        this.adapter = adapter;
+    }
+
+    @Override
+    public @NotNull Set<Capability> getCapabilities() {
+        return capabilities;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void setHologram(@NotNull Location location, @NotNull String[] lines) {
+        VirtualHologram hologram = holograms.get(location);
+        if (hologram == null) holograms.put(location, hologram = new VirtualHologram(location.clone().add(0.5, 2.0, 0.5)));
+        ArrayList<ArmorStand> stands = hologram.stands;
+        int common = Math.min(stands.size(), lines.length);
+
+        // Changed lines only need their name metadata to be sent again.
+        for (int i = 0; i < common; i++) {
+            ArmorStand stand = stands.get(i);
+            if (lines[i].equals(stand.getCustomName())) continue;
+            stand.setCustomName(lines[i]);
+            hologram.send(adapter.createMetadataPacket(stand, false));
+        }
+        if (stands.size() > lines.length) {
+            int[] ids = new int[stands.size() - lines.length];
+            for (int i = stands.size() - 1; i >= lines.length; i--) ids[i - lines.length] = stands.remove(i).getEntityId();
+            hologram.send(adapter.createDestroyPacket(ids));
+        }
+        for (int i = stands.size(); i < lines.length; i++) {
+            ArmorStand stand = adapter.createVirtualArmorStand(hologram.location.clone().subtract(0.0, i * LINE_HEIGHT, 0.0));
+            stand.setVisible(false);
+            stand.setMarker(true);
+            stand.setGravity(false);
+            stand.setCustomName(lines[i]);
+            stand.setCustomNameVisible(true);
+            stands.add(stand);
+            for (Player viewer : hologram.viewers) spawn(viewer, stand);
+        }
+    }
+
+    private void spawn(@NotNull Player player, @NotNull ArmorStand stand) {
+        adapter.sendPacket(player, adapter.createSpawnPacket(stand));
+        adapter.sendPacket(player, adapter.createMetadataPacket(stand, true));
+    }
+
+    @Override
+    public void showHologram(@NotNull Location location, @NotNull Player player) {
+        VirtualHologram hologram = holograms.get(location);
+        if (hologram == null || !hologram.viewers.add(player)) return;
+        for (ArmorStand stand : hologram.stands) spawn(player, stand);
+    }
+
+    @Override
+    public void hideHologram(@NotNull Location location, @NotNull Player player) {
+        VirtualHologram hologram = holograms.get(location);
+        if (hologram == null || !hologram.viewers.remove(player)) return;
+        adapter.sendPacket(player, hologram.destroyPacket());
+    }
+
+    @Override
+    public void removeViewer(@NotNull Player player) {
+        holograms.forEach((world, block, hologram) -> hologram.viewers.remove(player));
+    }
+
+    @Override
+    public void removeHologram(@NotNull Location location) {
+        VirtualHologram hologram = holograms.remove(location);
+        if (hologram != null) hologram.destroy();
+    }
+
+    @Override
+    public void removeHolograms(@NotNull World world, int chunkX, int chunkZ) {
+        LongHashMap<VirtualHologram> removed = holograms.removeChunk(world, chunkX, chunkZ);
+        if (removed != null) removed.forEach((block, hologram) -> hologram.destroy());
+    }
+
+    @Override
+    public void removeHolograms(@NotNull World world) {
+        LongHashMap<LongHashMap<VirtualHologram>> removed = holograms.removeWorld(world);
+        if (removed != null) removed.forEach((chunkKey, chunk) -> chunk.forEach((block, hologram) -> hologram.destroy()));
+    }
+
+    @Override
+    public void clear() {
+        holograms.forEach((world, block, hologram) -> hologram.destroy());
+        holograms.clear();
+    }
+
+    private final class VirtualHologram {
+        private final @NotNull Location location;
+        private final @NotNull ArrayList<ArmorStand> stands = new ArrayList<>(2);
+        private final @NotNull HashSet<Player> viewers = new HashSet<>(4);
+
+        private VirtualHologram(@NotNull Location location) {
+            this.location = location;
+        }
+
+        private void send(@NotNull Object packet) {
+            for (Player viewer : viewers) adapter.sendPacket(viewer, packet);
+        }
+
+        private @NotNull Object destroyPacket() {
+            int[] ids = new int[stands.size()];
+            for (int i = 0; i < ids.length; i++) ids[i] = stands.get(i).getEntityId();
+            return adapter.createDestroyPacket(ids);
+        }
+
+        private void destroy() {
+            if (!viewers.isEmpty()) send(destroyPacket());
+            viewers.clear();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.render;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The chunk each online player is in. Updated on the main thread only when a player crosses a chunk border, and read
+ * by the render task from any thread.
+ */
+public final class PlayerViews {
+    private final @NotNull ConcurrentHashMap<UUID, PlayerView> views = new ConcurrentHashMap<>();
+
+    /**
+     * Updates the chunk of the player, if it changed.
+     *
+     * @param player   The player that moved.
+     * @param location The new location of the player.
+     */
+    public void update(@NotNull Player player, @NotNull Location location) {
+        World world = location.getWorld();
+        if (world == null) return;
+        UUID worldId = world.getUID();
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+        PlayerView view = views.get(player.getUniqueId());
+
+        if (view != null && view.chunkX == chunkX && view.chunkZ == chunkZ && view.world.equals(worldId)) return;
+        views.put(player.getUniqueId(), new PlayerView(player, worldId, chunkX, chunkZ));
+    }
+
+    public void remove(@NotNull Player player) {
+        views.remove(player.getUniqueId());
+    }
+
+    public @Nullable PlayerView get(@NotNull UUID player) {
+        return views.get(player);
+    }
+
+    public boolean contains(@NotNull UUID player) {
+        return views.containsKey(player);
+    }
+
+    public int size() {
+        return views.size();
+    }
+
+    public void clear() {
+        views.clear();
+    }
+
+    public @NotNull Collection<PlayerView> getViews() {
+        return views.values();
+    }
+
+    public static final class PlayerView {
+        final @NotNull Player player;
+        final @NotNull UUID world;
+        final int chunkX;
+        final int chunkZ;
+
+        private PlayerView(@NotNull Player player, @NotNull UUID world, int chunkX, int chunkZ) {
+            this.player = player;
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        public @NotNull Player getPlayer() {
+            return player;
+        }
+    }
+}
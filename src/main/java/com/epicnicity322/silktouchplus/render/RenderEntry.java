@@ -0,0 +1,56 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.render;
+
+import com.epicnicity322.silktouchplus.packet.PacketAdapter;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The break animation of a spawner. Entries are immutable so they can be shared with the asynchronous render task, a
+ * stage change replaces the entry with {@link #withStage(int)}.
+ */
+public final class RenderEntry {
+    final int entityId;
+    final int blockX;
+    final int blockY;
+    final int blockZ;
+    final byte stage;
+    // Lazily created by the render task. Creating it twice in a race is harmless.
+    private volatile Object packetBreak;
+
+    RenderEntry(int entityId, int blockX, int blockY, int blockZ, int stage) {
+        this.entityId = entityId;
+        this.blockX = blockX;
+        this.blockY = blockY;
+        this.blockZ = blockZ;
+        this.stage = (byte) stage;
+    }
+
+    @NotNull RenderEntry withStage(int stage) {
+        return new RenderEntry(entityId, blockX, blockY, blockZ, stage);
+    }
+
+    @NotNull Object packetBreak(@NotNull PacketAdapter adapter) {
+        Object packetBreak = this.packetBreak;
+        if (packetBreak == null) {
+            this.packetBreak = packetBreak = adapter.createBlockBreakPacket(entityId, blockX, blockY, blockZ, stage);
+        }
+        return packetBreak;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.render;
+
+import com.epicnicity322.silktouchplus.util.BlockMap;
+import com.epicnicity322.silktouchplus.util.LongHashMap;
+import com.epicnicity322.silktouchplus.util.SilkTouchPlusUtil;
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * The spawners that have their damage rendered. Must only be modified on the main thread, changes become visible to
+ * the render task when {@link #publish()} creates a new {@link RenderSnapshot}. Only the chunks that changed since the
+ * last snapshot are copied.
+ */
+public final class RenderRegistry {
+    private static final @NotNull Random random = new Random();
+    private final @NotNull BlockMap<RenderEntry> entries = new BlockMap<>();
+    private final @NotNull HashMap<UUID, LongHashMap<Boolean>> dirtyChunks = new HashMap<>();
+    private volatile @NotNull RenderSnapshot snapshot = RenderSnapshot.EMPTY;
+
+    /**
+     * Adds the spawner to the registry, or updates its stage if it's already registered.
+     *
+     * @param stage The break animation stage of the spawner.
+     */
+    public void set(@NotNull World world, int x, int y, int z, int stage) {
+        RenderEntry entry = entries.get(world, x, y, z);
+
+        if (entry == null) {
+            entries.put(world, x, y, z, new RenderEntry(random.nextInt(), x, y, z, stage));
+        } else if (entry.stage != stage) {
+            entries.put(world, x, y, z, entry.withStage(stage));
+        } else {
+            return;
+        }
+        markDirty(world, x >> 4, z >> 4);
+    }
+
+    public void remove(@NotNull World world, int x, int y, int z) {
+        if (entries.remove(world, x, y, z) != null) markDirty(world, x >> 4, z >> 4);
+    }
+
+    /**
+     * Removes all spawners in this chunk.
+     *
+     * @return The removed spawners keyed by packed block position, or null if the chunk had none.
+     */
+    public @Nullable LongHashMap<RenderEntry> removeChunk(@NotNull World world, int chunkX, int chunkZ) {
+        LongHashMap<RenderEntry> removed = entries.removeChunk(world, chunkX, chunkZ);
+        if (removed != null) markDirty(world, chunkX, chunkZ);
+        return removed;
+    }
+
+    /**
+     * Removes all spawners in this world.
+     */
+    public void removeWorld(@NotNull World world) {
+        LongHashMap<LongHashMap<RenderEntry>> removed = entries.removeWorld(world);
+        if (removed != null) removed.forEach((chunkKey, chunk) -> markDirty(world, SilkTouchPlusUtil.chunkX(chunkKey), SilkTouchPlusUtil.chunkZ(chunkKey)));
+    }
+
+    private void markDirty(@NotNull World world, int chunkX, int chunkZ) {
+        dirtyChunks.computeIfAbsent(world.getUID(), k -> new LongHashMap<>()).put(SilkTouchPlusUtil.chunkKey(chunkX, chunkZ), Boolean.TRUE);
+    }
+
+    /**
+     * Publishes a new snapshot if anything changed since the last one. Must be called on the main thread.
+     */
+    public void publish() {
+        if (dirtyChunks.isEmpty()) return;
+        RenderSnapshot previous = snapshot;
+        HashMap<UUID, LongHashMap<RenderEntry[]>> worlds = new HashMap<>(previous.getWorlds());
+
+        dirtyChunks.forEach((world, chunks) -> {
+            LongHashMap<RenderEntry[]> previousChunks = worlds.get(world);
+            LongHashMap<RenderEntry[]> newChunks = previousChunks == null ? new LongHashMap<>() : new LongHashMap<>(previousChunks);
+            LongHashMap<LongHashMap<RenderEntry>> currentChunks = entries.getWorld(world);
+
+            chunks.forEach((chunkKey, dirty) -> {
+                LongHashMap<RenderEntry> chunk = currentChunks == null ? null : currentChunks.get(chunkKey);
+
+                if (chunk == null || chunk.isEmpty()) {
+                    newChunks.remove(chunkKey);
+                } else {
+                    newChunks.put(chunkKey, chunk.valuesToArray(RenderEntry[]::new));
+                }
+            });
+
+            if (newChunks.isEmpty()) {
+                worlds.remove(world);
+            } else {
+                worlds.put(world, newChunks);
+            }
+        });
+
+        dirtyChunks.clear();
+        snapshot = new RenderSnapshot(previous.getVersion() + 1, worlds, entries.size());
+    }
+
+    /**
+     * @return The latest published snapshot. Safe to call from any thread.
+     */
+    public @NotNull RenderSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
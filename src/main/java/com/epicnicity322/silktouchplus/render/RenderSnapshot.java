@@ -0,0 +1,69 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.render;
+
+import com.epicnicity322.silktouchplus.util.LongHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An immutable view of the spawners being rendered, published by {@link RenderRegistry} on the main thread and read
+ * without locking by the render task. Neither the maps nor the arrays in a snapshot are modified after it's published.
+ */
+public final class RenderSnapshot {
+    static final @NotNull RenderSnapshot EMPTY = new RenderSnapshot(0, Collections.emptyMap(), 0);
+    private final long version;
+    private final @NotNull Map<UUID, LongHashMap<RenderEntry[]>> worlds;
+    private final int size;
+
+    RenderSnapshot(long version, @NotNull Map<UUID, LongHashMap<RenderEntry[]>> worlds, int size) {
+        this.version = version;
+        this.worlds = Collections.unmodifiableMap(worlds);
+        this.size = size;
+    }
+
+    /**
+     * @return A number that increases every time a snapshot with changes is published.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The amount of spawners in this snapshot.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The spawners of each chunk of the world keyed by chunk key, or null if the world has no spawners.
+     */
+    public @Nullable LongHashMap<RenderEntry[]> getWorld(@NotNull UUID world) {
+        return worlds.get(world);
+    }
+
+    public @NotNull Map<UUID, LongHashMap<RenderEntry[]>> getWorlds() {
+        return worlds;
+    }
+}
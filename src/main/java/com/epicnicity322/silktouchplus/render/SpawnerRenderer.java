@@ -0,0 +1,257 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.render;
+
+import com.epicnicity322.silktouchplus.packet.PacketAdapter;
+import com.epicnicity322.silktouchplus.util.LongHashMap;
+import com.epicnicity322.silktouchplus.util.SilkTouchPlusUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends the break animation of the spawners in the {@link RenderRegistry} to the players that can see them. Rendering
+ * only reads the latest published snapshot and player views, so it can run asynchronously without racing the main
+ * thread.
+ * <p>
+ * The stage last sent of each spawner is remembered per player, so unchanged animations are only sent again when
+ * they're about to expire on the client. Players are rendered round-robin in small slices every tick, instead of all
+ * at once.
+ */
+public final class SpawnerRenderer {
+    /**
+     * Clients forget a break animation that isn't updated for 400 ticks (20 seconds). An animation is only resent when
+     * its player is rendered again, which can be up to a whole cycle after this interval passed.
+     */
+    private static final long RESEND_INTERVAL = TimeUnit.SECONDS.toNanos(8);
+    /**
+     * The shortest and longest a cycle through every player can take, in ticks. {@link #RESEND_INTERVAL} plus the
+     * longest cycle must stay below 20 seconds, so animations are resent before they expire. This leaves 7 seconds for
+     * cycles that run late because of the tick budget.
+     */
+    private static final int MIN_CYCLE_TICKS = 20;
+    private static final int MAX_CYCLE_TICKS = 100;
+    /**
+     * Every this many spawners add a tick to the length of the cycle.
+     */
+    private static final int SPAWNERS_PER_CYCLE_TICK = 250;
+    private final @NotNull ConcurrentHashMap<UUID, PlayerRenderState> renderStates = new ConcurrentHashMap<>();
+    private final @NotNull RenderRegistry registry = new RenderRegistry();
+    private final @NotNull PlayerViews views = new PlayerViews();
+    private volatile int renderRadius = 0;
+    private volatile @Nullable PacketAdapter packetAdapter;
+    private volatile int microsecondBudget = 1000;
+    private volatile int packetBudget = 500;
+    private volatile int refreshPeriod = 0;
+    private final @NotNull AtomicBoolean rendering = new AtomicBoolean();
+    // Only touched by the render task.
+    private @NotNull UUID[] cycle = new UUID[0];
+    private int cursor = 0;
+    private int tick = 0;
+    private int cycleStart = 0;
+    private int cycleTicks = MIN_CYCLE_TICKS;
+
+    /**
+     * @param packetAdapter The adapter used to create and send the break animation packets, or null to stop rendering.
+     */
+    public void setPacketAdapter(@Nullable PacketAdapter packetAdapter) {
+        this.packetAdapter = packetAdapter;
+    }
+
+    public @NotNull RenderRegistry getRegistry() {
+        return registry;
+    }
+
+    public @NotNull PlayerViews getViews() {
+        return views;
+    }
+
+    /**
+     * @param renderRadius The radius in chunks around players where spawners are rendered, 0 to use the server's view
+     *                     distance.
+     */
+    public void setRenderRadius(int renderRadius) {
+        this.renderRadius = Math.max(renderRadius, 0);
+    }
+
+    /**
+     * @param microsecondBudget The time in microseconds rendering may take per tick.
+     * @param packetBudget      The amount of packets that may be sent per tick.
+     */
+    public void setBudget(int microsecondBudget, int packetBudget) {
+        this.microsecondBudget = Math.max(microsecondBudget, 1);
+        this.packetBudget = Math.max(packetBudget, 1);
+    }
+
+    private int renderRadius() {
+        int radius = renderRadius;
+        return radius == 0 ? Bukkit.getViewDistance() : radius;
+    }
+
+    /**
+     * Renders the next slice of players of the current cycle, sending to each of them the break animations they
+     * haven't seen yet, that changed stage, or that are about to expire on the client. Meant to be called every tick,
+     * the tick is skipped if the previous slice is still running.
+     * <p>
+     * A cycle goes through every online player once. Its length grows with the amount of spawners, so the work is
+     * spread evenly across ticks, and each slice stops early once the time or packet budget of the tick is used up.
+     */
+    public void render() {
+        PacketAdapter adapter = packetAdapter;
+        if (adapter == null) return;
+        // Async timers don't wait for the previous run, a slow slice makes the next one be skipped.
+        if (!rendering.compareAndSet(false, true)) return;
+        try {
+            renderSlice(adapter);
+        } finally {
+            rendering.set(false);
+        }
+    }
+
+    private void renderSlice(@NotNull PacketAdapter adapter) {
+        long start = System.nanoTime();
+        RenderSnapshot snapshot = registry.getSnapshot();
+        tick++;
+
+        if (cursor >= cycle.length) {
+            if (cycle.length != 0) refreshPeriod = tick - cycleStart;
+            // Players that quit during the last cycle.
+            if (renderStates.size() > views.size()) renderStates.keySet().removeIf(player -> !views.contains(player));
+            cycle = views.getViews().stream().map(view -> view.player.getUniqueId()).toArray(UUID[]::new);
+            cursor = 0;
+            cycleStart = tick;
+            cycleTicks = Math.max(MIN_CYCLE_TICKS, Math.min(MAX_CYCLE_TICKS, snapshot.size() / SPAWNERS_PER_CYCLE_TICK));
+            if (cycle.length == 0) return;
+        }
+
+        // Players are spread evenly over the cycle, so with fewer players than ticks some ticks render no one. Slices
+        //cut short by the budget are caught up on the next ticks.
+        long elapsed = tick - cycleStart + 1;
+        int due = (int) Math.min(cycle.length, (cycle.length * elapsed + cycleTicks - 1) / cycleTicks);
+        int slice = due - cursor;
+        long timeBudget = TimeUnit.MICROSECONDS.toNanos(microsecondBudget);
+        int packetBudget = this.packetBudget;
+        int radius = renderRadius();
+        int packets = 0;
+
+        // The first player of the slice is always rendered, so the cycle moves on even with a tight budget.
+        for (int rendered = 0; rendered < slice && cursor < cycle.length; rendered++) {
+            if (rendered != 0 && (packets >= packetBudget || System.nanoTime() - start >= timeBudget)) break;
+            PlayerViews.PlayerView view = views.get(cycle[cursor++]);
+            if (view != null) packets += render(adapter, snapshot, view, radius, System.nanoTime());
+        }
+    }
+
+    private int render(@NotNull PacketAdapter adapter, @NotNull RenderSnapshot snapshot,
+                       @NotNull PlayerViews.PlayerView view, int radius, long now) {
+        Player player = view.player;
+        PlayerRenderState stored = renderStates.get(player.getUniqueId());
+        PlayerRenderState previous = stored != null && stored.world.equals(view.world) ? stored : null;
+        // Spawners not visible this cycle are forgotten, so they're sent again when they come back into view.
+        PlayerRenderState current = new PlayerRenderState(view.world);
+        renderStates.put(player.getUniqueId(), current);
+
+        LongHashMap<RenderEntry[]> chunks = snapshot.getWorld(view.world);
+        if (chunks == null) return 0;
+        int side = radius * 2 + 1;
+
+        if (chunks.size() < side * side) {
+            // Fewer chunks with spawners than chunks in view, checking each of them is cheaper.
+            chunks.forEach((chunkKey, entries) -> {
+                int chunkX = SilkTouchPlusUtil.chunkX(chunkKey), chunkZ = SilkTouchPlusUtil.chunkZ(chunkKey);
+                if (Math.abs(chunkX - view.chunkX) <= radius && Math.abs(chunkZ - view.chunkZ) <= radius) {
+                    current.packets += send(adapter, player, entries, previous, current, now);
+                }
+            });
+        } else {
+            for (int chunkX = view.chunkX - radius; chunkX <= view.chunkX + radius; chunkX++) {
+                for (int chunkZ = view.chunkZ - radius; chunkZ <= view.chunkZ + radius; chunkZ++) {
+                    RenderEntry[] entries = chunks.get(SilkTouchPlusUtil.chunkKey(chunkX, chunkZ));
+                    if (entries != null) current.packets += send(adapter, player, entries, previous, current, now);
+                }
+            }
+        }
+        return current.packets;
+    }
+
+    private int send(@NotNull PacketAdapter adapter, @NotNull Player player, @NotNull RenderEntry[] entries,
+                     @Nullable PlayerRenderState previous, @NotNull PlayerRenderState current, long now) {
+        int packets = 0;
+        for (RenderEntry entry : entries) {
+            long block = SilkTouchPlusUtil.packBlock(entry.blockX, entry.blockY, entry.blockZ);
+            SentStage sent = previous == null ? null : previous.sent.get(block);
+
+            // A spawner seen for the first time has no cracks on the client.
+            if (sent == null) sent = new SentStage((byte) -1, now);
+            if (sent.stage != entry.stage || (entry.stage != -1 && now - sent.time >= RESEND_INTERVAL)) {
+                adapter.sendPacket(player, entry.packetBreak(adapter));
+                sent.stage = entry.stage;
+                sent.time = now;
+                packets++;
+            }
+            current.sent.put(block, sent);
+        }
+        return packets;
+    }
+
+    /**
+     * The amount of ticks the last cycle took to go through every online player, which is about how long it takes for
+     * a damage change to be seen.
+     *
+     * @return The achieved refresh period in ticks, or 0 if no cycle was completed yet.
+     */
+    public int getRefreshPeriod() {
+        return refreshPeriod;
+    }
+
+    /**
+     * Forgets what was sent to the player.
+     *
+     * @param player The player that left.
+     */
+    public void forget(@NotNull Player player) {
+        renderStates.remove(player.getUniqueId());
+    }
+
+    private static final class PlayerRenderState {
+        private final @NotNull UUID world;
+        private final @NotNull LongHashMap<SentStage> sent = new LongHashMap<>();
+        private int packets;
+
+        private PlayerRenderState(@NotNull UUID world) {
+            this.world = world;
+        }
+    }
+
+    private static final class SentStage {
+        private byte stage;
+        private long time;
+
+        private SentStage(byte stage, long time) {
+            this.stage = stage;
+            this.time = time;
+        }
+    }
+}
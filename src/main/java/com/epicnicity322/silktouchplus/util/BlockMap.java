@@ -0,0 +1,172 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.util;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Values mapped to block positions, bucketed by world and chunk so a whole chunk can be taken out at once.
+ *
+ * @param <V> The type of the values.
+ */
+public final class BlockMap<V> {
+    private final @NotNull HashMap<UUID, LongHashMap<LongHashMap<V>>> worlds = new HashMap<>();
+    private int size = 0;
+
+    public @Nullable V get(@NotNull World world, int x, int y, int z) {
+        LongHashMap<V> chunk = getChunk(world, x >> 4, z >> 4);
+        return chunk == null ? null : chunk.get(SilkTouchPlusUtil.packBlock(x, y, z));
+    }
+
+    public @Nullable V put(@NotNull World world, int x, int y, int z, @NotNull V value) {
+        LongHashMap<LongHashMap<V>> chunks = worlds.computeIfAbsent(world.getUID(), k -> new LongHashMap<>());
+        long chunkKey = SilkTouchPlusUtil.chunkKey(x >> 4, z >> 4);
+        LongHashMap<V> chunk = chunks.get(chunkKey);
+
+        if (chunk == null) chunks.put(chunkKey, chunk = new LongHashMap<>(4));
+
+        V previous = chunk.put(SilkTouchPlusUtil.packBlock(x, y, z), value);
+        if (previous == null) size++;
+        return previous;
+    }
+
+    public @Nullable V remove(@NotNull World world, int x, int y, int z) {
+        LongHashMap<LongHashMap<V>> chunks = worlds.get(world.getUID());
+        if (chunks == null) return null;
+        long chunkKey = SilkTouchPlusUtil.chunkKey(x >> 4, z >> 4);
+        LongHashMap<V> chunk = chunks.get(chunkKey);
+        if (chunk == null) return null;
+        V previous = chunk.remove(SilkTouchPlusUtil.packBlock(x, y, z));
+
+        if (previous != null) {
+            size--;
+            if (chunk.isEmpty()) chunks.remove(chunkKey);
+        }
+        return previous;
+    }
+
+    /**
+     * @throws IllegalArgumentException If location has no world.
+     */
+    public @Nullable V get(@NotNull Location location) {
+        return get(world(location), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    /**
+     * @throws IllegalArgumentException If location has no world.
+     */
+    public @Nullable V put(@NotNull Location location, @NotNull V value) {
+        return put(world(location), location.getBlockX(), location.getBlockY(), location.getBlockZ(), value);
+    }
+
+    /**
+     * @throws IllegalArgumentException If location has no world.
+     */
+    public @Nullable V remove(@NotNull Location location) {
+        return remove(world(location), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    private static @NotNull World world(@NotNull Location location) {
+        World world = location.getWorld();
+        if (world == null) throw new IllegalArgumentException("Location does not specify a world!");
+        return world;
+    }
+
+    /**
+     * @return The values in this chunk keyed by packed block position, or null if the chunk has none.
+     * @see SilkTouchPlusUtil#packBlock(int, int, int)
+     */
+    public @Nullable LongHashMap<V> getChunk(@NotNull World world, int chunkX, int chunkZ) {
+        LongHashMap<LongHashMap<V>> chunks = worlds.get(world.getUID());
+        return chunks == null ? null : chunks.get(SilkTouchPlusUtil.chunkKey(chunkX, chunkZ));
+    }
+
+    /**
+     * Removes all values in a chunk.
+     *
+     * @return The removed values keyed by packed block position, or null if the chunk had none.
+     */
+    public @Nullable LongHashMap<V> removeChunk(@NotNull World world, int chunkX, int chunkZ) {
+        LongHashMap<LongHashMap<V>> chunks = worlds.get(world.getUID());
+        if (chunks == null) return null;
+        LongHashMap<V> chunk = chunks.remove(SilkTouchPlusUtil.chunkKey(chunkX, chunkZ));
+        if (chunk != null) size -= chunk.size();
+        return chunk;
+    }
+
+    /**
+     * @return The chunks of this world keyed by chunk key, or null if the world has no values.
+     * @see SilkTouchPlusUtil#chunkKey(int, int)
+     */
+    public @Nullable LongHashMap<LongHashMap<V>> getWorld(@NotNull World world) {
+        return worlds.get(world.getUID());
+    }
+
+    /**
+     * @return The chunks of the world with this UID keyed by chunk key, or null if the world has no values.
+     */
+    public @Nullable LongHashMap<LongHashMap<V>> getWorld(@NotNull UUID world) {
+        return worlds.get(world);
+    }
+
+    public @Nullable LongHashMap<LongHashMap<V>> removeWorld(@NotNull World world) {
+        LongHashMap<LongHashMap<V>> chunks = worlds.remove(world.getUID());
+        if (chunks != null) chunks.forEach((chunkKey, chunk) -> size -= chunk.size());
+        return chunks;
+    }
+
+    /**
+     * Performs the action for each value of this map. The map must not be modified while iterating.
+     *
+     * @param consumer The action to perform.
+     */
+    public void forEach(@NotNull BlockConsumer<V> consumer) {
+        worlds.forEach((world, chunks) -> chunks.forEach((chunkKey, chunk) -> chunk.forEach((block, value) -> consumer.accept(world, block, value))));
+    }
+
+    /**
+     * Performs the action for the chunks of each world in this map. The map must not be modified while iterating.
+     *
+     * @param consumer The action to perform, with the world's UID and its chunks keyed by chunk key.
+     */
+    public void forEachWorld(@NotNull BiConsumer<UUID, LongHashMap<LongHashMap<V>>> consumer) {
+        worlds.forEach(consumer);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        worlds.clear();
+        size = 0;
+    }
+
+    @FunctionalInterface
+    public interface BlockConsumer<V> {
+        void accept(@NotNull UUID world, long block, @NotNull V value);
+    }
+}
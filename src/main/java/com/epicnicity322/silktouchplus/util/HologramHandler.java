@@ -19,17 +19,89 @@
 package com.epicnicity322.silktouchplus.util;
 
 import org.bukkit.Location;
-import org.bukkit.block.CreatureSpawner;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
 public interface HologramHandler {
+    /**
+     * @return The batch operations this handler applies in a single pass.
+     */
+    default @NotNull Set<Capability> getCapabilities() {
+        return Collections.emptySet();
+    }
+
     boolean isEnabled();
 
     void setEnabled(boolean enabled);
 
-    void createHologram(@NotNull CreatureSpawner spawner, double health);
+    /**
+     * Sets the lines of the hologram above the spawner, replacing the lines of the hologram already there. New
+     * holograms are not visible to anyone until {@link #showHologram(Location, Player)} is called.
+     *
+     * @param location The location of the spawner.
+     * @param lines    The lines of the hologram, at least one.
+     */
+    void setHologram(@NotNull Location location, @NotNull String[] lines);
+
+    /**
+     * Sets the lines of many holograms at once. Implementations may override this to apply the changes in a single
+     * pass.
+     *
+     * @param holograms The lines of the holograms by the location of their spawner.
+     * @see #setHologram(Location, String[])
+     */
+    default void setHolograms(@NotNull Map<Location, String[]> holograms) {
+        holograms.forEach(this::setHologram);
+    }
+
+    void showHologram(@NotNull Location location, @NotNull Player player);
+
+    void hideHologram(@NotNull Location location, @NotNull Player player);
 
     void removeHologram(@NotNull Location location);
 
+    /**
+     * Stops tracking this player as a viewer of any hologram, without sending anything to them. Called when the player
+     * quits, so handlers that keep their own viewers don't hold on to offline players.
+     *
+     * @param player The player that quit.
+     */
+    default void removeViewer(@NotNull Player player) {
+    }
+
+    /**
+     * Removes all holograms of spawners in this chunk.
+     *
+     * @throws UnsupportedOperationException If this handler does not have {@link Capability#REMOVE_CHUNK}.
+     */
+    default void removeHolograms(@NotNull World world, int chunkX, int chunkZ) {
+        throw new UnsupportedOperationException("Removing holograms by chunk is not supported.");
+    }
+
+    /**
+     * Removes all holograms of spawners in this world.
+     *
+     * @throws UnsupportedOperationException If this handler does not have {@link Capability#REMOVE_WORLD}.
+     */
+    default void removeHolograms(@NotNull World world) {
+        throw new UnsupportedOperationException("Removing holograms by world is not supported.");
+    }
+
     void clear();
+
+    enum Capability {
+        /**
+         * Supports {@link #removeHolograms(World, int, int)}.
+         */
+        REMOVE_CHUNK,
+        /**
+         * Supports {@link #removeHolograms(World)}.
+         */
+        REMOVE_WORLD
+    }
 }
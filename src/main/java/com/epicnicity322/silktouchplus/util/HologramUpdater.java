@@ -0,0 +1,351 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.util;
+
+import com.epicnicity322.silktouchplus.SilkTouchPlus;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.CreatureSpawner;
+import org.bukkit.entity.Player;
+import org.bukkit.persistence.PersistentDataType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Coalesces hologram updates of spawners. Spawners are marked dirty as their health changes, and their hologram is
+ * updated by {@link #flush()} at most once every refresh interval. Updates that would show the same text as the
+ * hologram already shows are skipped.
+ * <p>
+ * Holograms only exist while a player is within the view distance of the spawner, and are only shown to the players
+ * near it.
+ */
+public final class HologramUpdater {
+    private static final int VIEWER_UPDATE_INTERVAL = 10;
+    private final @NotNull HologramHandler handler;
+    private final @NotNull NamespacedKey hologramEnabledKey;
+    private final @NotNull BlockMap<Entry> entries = new BlockMap<>();
+    /**
+     * Hologram lines to be set in a single call to the handler.
+     */
+    private final @NotNull HashMap<Location, String[]> batch = new HashMap<>();
+    /**
+     * Dirty spawners by the tick they're due to be updated, wrapping around every refresh interval.
+     */
+    private @NotNull ArrayList<ArrayList<Entry>> due = newDue(1);
+    /**
+     * The spawners that had players near them in the last viewer update.
+     */
+    private @NotNull ArrayList<Entry> visible = new ArrayList<>();
+    private int refreshInterval = 1;
+    private int viewDistance = 16;
+    private long tick = 0;
+
+    public HologramUpdater(@NotNull HologramHandler handler, @NotNull NamespacedKey hologramEnabledKey) {
+        this.handler = handler;
+        this.hologramEnabledKey = hologramEnabledKey;
+    }
+
+    private static @NotNull ArrayList<ArrayList<Entry>> newDue(int size) {
+        ArrayList<ArrayList<Entry>> due = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) due.add(new ArrayList<>());
+        return due;
+    }
+
+    public @NotNull HologramHandler getHandler() {
+        return handler;
+    }
+
+    public boolean isEnabled() {
+        return handler.isEnabled();
+    }
+
+    /**
+     * Sets the minimum amount of ticks between two updates of the same hologram. All holograms are cleared.
+     *
+     * @param refreshInterval The refresh interval in ticks.
+     */
+    public void setRefreshInterval(int refreshInterval) {
+        clear();
+        this.refreshInterval = Math.max(refreshInterval, 1);
+        due = newDue(this.refreshInterval + 1);
+    }
+
+    /**
+     * @param viewDistance The distance in blocks players must be from a spawner to see its hologram.
+     */
+    public void setViewDistance(int viewDistance) {
+        this.viewDistance = Math.max(viewDistance, 1);
+    }
+
+    /**
+     * Marks the hologram of this spawner to be updated as soon as its refresh interval allows.
+     *
+     * @param spawner The spawner to update the hologram.
+     * @param health  The current health of the spawner.
+     */
+    public void markDirty(@NotNull CreatureSpawner spawner, double health) {
+        if (!handler.isEnabled()) return;
+        World world = spawner.getWorld();
+        int x = spawner.getX(), y = spawner.getY(), z = spawner.getZ();
+        Entry entry = entries.get(world, x, y, z);
+
+        if (entry == null) {
+            entry = new Entry(spawner.getLocation());
+            entries.put(world, x, y, z, entry);
+        }
+
+        entry.spawner = spawner;
+        entry.health = health;
+        if (entry.dirty) return;
+        entry.dirty = true;
+        long dueTick = Math.max(tick + 1, entry.lastUpdate + refreshInterval);
+        due.get((int) (dueTick % due.size())).add(entry);
+    }
+
+    /**
+     * Updates the holograms of the dirty spawners that are due this tick, and who can see the holograms every
+     * {@link #VIEWER_UPDATE_INTERVAL} ticks. Must be called every tick.
+     */
+    public void flush() {
+        ArrayList<Entry> dueEntries = due.get((int) (++tick % due.size()));
+
+        if (!dueEntries.isEmpty()) {
+            for (Entry entry : dueEntries) {
+                entry.dirty = false;
+                if (!entry.removed) update(entry);
+            }
+            dueEntries.clear();
+            applyBatch();
+        }
+        if (tick % VIEWER_UPDATE_INTERVAL == 0) updateViewers();
+    }
+
+    /**
+     * Creates the holograms of spawners that players got near to, shows and hides them to the players that got in or
+     * out of view distance, and deletes the ones nobody is near anymore.
+     */
+    private void updateViewers() {
+        ArrayList<Entry> nearby = new ArrayList<>();
+        int viewDistance = this.viewDistance;
+        int chunkRadius = (viewDistance >> 4) + 1;
+        double distanceSquared = (double) viewDistance * viewDistance;
+
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            Location location = player.getLocation();
+            World world = location.getWorld();
+            if (world == null) continue;
+            LongHashMap<LongHashMap<Entry>> chunks = entries.getWorld(world);
+            if (chunks == null) continue;
+            double x = location.getX(), y = location.getY(), z = location.getZ();
+            int chunkX = location.getBlockX() >> 4, chunkZ = location.getBlockZ() >> 4;
+
+            for (int cx = chunkX - chunkRadius; cx <= chunkX + chunkRadius; cx++) {
+                for (int cz = chunkZ - chunkRadius; cz <= chunkZ + chunkRadius; cz++) {
+                    LongHashMap<Entry> chunk = chunks.get(SilkTouchPlusUtil.chunkKey(cx, cz));
+                    if (chunk == null) continue;
+
+                    chunk.forEach((block, entry) -> {
+                        if (entry.lines == null) return;
+                        double dx = entry.location.getX() + 0.5 - x, dy = entry.location.getY() + 0.5 - y, dz = entry.location.getZ() + 0.5 - z;
+                        if (dx * dx + dy * dy + dz * dz > distanceSquared) return;
+
+                        if (entry.nearby == null) {
+                            entry.nearby = new HashSet<>(4);
+                            nearby.add(entry);
+                        }
+                        entry.nearby.add(player);
+                    });
+                }
+            }
+        }
+
+        for (Entry entry : visible) {
+            if (entry.nearby != null || entry.removed || !entry.created) continue;
+            // Nobody is near this spawner anymore.
+            handler.removeHologram(entry.location);
+            entry.created = false;
+            entry.viewers = null;
+        }
+        // Holograms are created in one batch before being shown.
+        for (Entry entry : nearby) {
+            if (entry.created || entry.lines == null) continue;
+            batch.put(entry.location, entry.lines);
+            entry.created = true;
+        }
+        applyBatch();
+        for (Entry entry : nearby) {
+            HashSet<Player> players = entry.nearby;
+            HashSet<Player> viewers = entry.viewers;
+            entry.nearby = null;
+            if (players == null || !entry.created) continue;
+
+            if (viewers != null) {
+                viewers.removeIf(viewer -> {
+                    if (players.contains(viewer)) return false;
+                    handler.hideHologram(entry.location, viewer);
+                    return true;
+                });
+            }
+            for (Player player : players) {
+                if (viewers == null || !viewers.contains(player)) handler.showHologram(entry.location, player);
+            }
+            entry.viewers = players;
+        }
+        visible = nearby;
+    }
+
+    private void update(@NotNull Entry entry) {
+        CreatureSpawner spawner = entry.spawner;
+        if (spawner == null) return;
+        entry.spawner = null;
+        String[] lines = null;
+
+        if (handler.isEnabled() && spawner.getPersistentDataContainer().getOrDefault(hologramEnabledKey, PersistentDataType.INTEGER, 0) == 1) {
+            double health = entry.health;
+            lines = SilkTouchPlus.getTemplate("Spawner Hologram").formatLines(spawner.getSpawnedType().name(), Double.toString(health), SilkTouchPlusUtil.formatHealth(health));
+        }
+
+        if (lines == null || lines.length == 0 || lines[0].isEmpty()) {
+            // No hologram to show, there's no need to keep track of this spawner.
+            remove(entry.location);
+            return;
+        }
+        if (Arrays.equals(lines, entry.lines)) return;
+
+        entry.lines = lines;
+        // Holograms that don't exist yet are created with these lines once a player gets near.
+        if (!entry.created) return;
+        entry.lastUpdate = tick;
+        batch.put(entry.location, lines);
+    }
+
+    private void applyBatch() {
+        if (batch.isEmpty()) return;
+        handler.setHolograms(batch);
+        batch.clear();
+    }
+
+    /**
+     * Removes the hologram of the spawner in this location.
+     *
+     * @param location The location of the spawner.
+     */
+    public void remove(@NotNull Location location) {
+        World world = location.getWorld();
+        if (world == null) return;
+        Entry entry = entries.remove(world, location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        if (entry != null) remove(entry);
+    }
+
+    /**
+     * Removes the holograms of all spawners in this chunk.
+     *
+     * @param chunk The chunk being unloaded.
+     */
+    public void removeChunk(@NotNull Chunk chunk) {
+        World world = chunk.getWorld();
+        LongHashMap<Entry> chunkEntries = entries.removeChunk(world, chunk.getX(), chunk.getZ());
+        if (chunkEntries == null) return;
+
+        if (handler.getCapabilities().contains(HologramHandler.Capability.REMOVE_CHUNK)) {
+            chunkEntries.forEach((block, entry) -> forget(entry));
+            handler.removeHolograms(world, chunk.getX(), chunk.getZ());
+        } else {
+            chunkEntries.forEach((block, entry) -> remove(entry));
+        }
+    }
+
+    /**
+     * Removes the holograms of all spawners in this world.
+     *
+     * @param world The world being unloaded.
+     */
+    public void removeWorld(@NotNull World world) {
+        LongHashMap<LongHashMap<Entry>> chunks = entries.removeWorld(world);
+        if (chunks == null) return;
+
+        if (handler.getCapabilities().contains(HologramHandler.Capability.REMOVE_WORLD)) {
+            chunks.forEach((chunkKey, chunk) -> chunk.forEach((block, entry) -> forget(entry)));
+            handler.removeHolograms(world);
+        } else {
+            chunks.forEach((chunkKey, chunk) -> chunk.forEach((block, entry) -> remove(entry)));
+        }
+    }
+
+    /**
+     * Forgets this player as a viewer of all holograms.
+     *
+     * @param player The player that quit.
+     */
+    public void removeViewer(@NotNull Player player) {
+        for (Entry entry : visible) {
+            if (entry.viewers != null) entry.viewers.remove(player);
+        }
+        handler.removeViewer(player);
+    }
+
+    private void remove(@NotNull Entry entry) {
+        forget(entry);
+        if (entry.created) handler.removeHologram(entry.location);
+    }
+
+    private void forget(@NotNull Entry entry) {
+        entry.removed = true;
+        entry.spawner = null;
+    }
+
+    /**
+     * Removes all holograms.
+     */
+    public void clear() {
+        entries.forEach((world, block, entry) -> entry.removed = true);
+        entries.clear();
+        for (ArrayList<Entry> dueEntries : due) dueEntries.clear();
+        visible.clear();
+        handler.clear();
+    }
+
+    private static final class Entry {
+        private final @NotNull Location location;
+        private @Nullable CreatureSpawner spawner;
+        private double health;
+        /**
+         * The lines of the hologram, null if it has no hologram.
+         */
+        private @Nullable String[] lines;
+        private @Nullable HashSet<Player> viewers;
+        private @Nullable HashSet<Player> nearby;
+        private long lastUpdate = Long.MIN_VALUE / 2;
+        private boolean dirty;
+        private boolean removed;
+        private boolean created;
+
+        private Entry(@NotNull Location location) {
+            this.location = location;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.util;
+
+import org.bukkit.entity.AnimalTamer;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.LivingEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Projectile;
+import org.bukkit.entity.Tameable;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.projectiles.ProjectileSource;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Finds the player responsible for a death when the entity dies, instead of following every hit it takes.
+ */
+public final class KillAttribution {
+    private KillAttribution() {
+    }
+
+    /**
+     * Gets the player that killed the entity. Besides direct kills, kills by projectiles shot by a player and by
+     * animals tamed by an online player are attributed to that player.
+     *
+     * @param entity The entity that died.
+     * @return The player responsible for the death, or null if it wasn't caused by a player.
+     */
+    public static @Nullable Player getKiller(@NotNull LivingEntity entity) {
+        Player killer = entity.getKiller();
+        if (killer != null) return killer;
+
+        EntityDamageEvent lastDamage = entity.getLastDamageCause();
+        if (!(lastDamage instanceof EntityDamageByEntityEvent)) return null;
+        Entity damager = ((EntityDamageByEntityEvent) lastDamage).getDamager();
+
+        if (damager instanceof Projectile) {
+            ProjectileSource shooter = ((Projectile) damager).getShooter();
+            if (!(shooter instanceof Entity)) return null;
+            damager = (Entity) shooter;
+        }
+        if (damager instanceof Player) return (Player) damager;
+        if (damager instanceof Tameable) {
+            AnimalTamer owner = ((Tameable) damager).getOwner();
+            if (owner instanceof Player) return (Player) owner;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.IntFunction;
+
+/**
+ * An open addressing hash map with primitive long keys, so packed block and chunk positions can be looked up without
+ * boxing. Null values are not allowed, a null value marks an empty slot.
+ *
+ * @param <V> The type of the values.
+ */
+public final class LongHashMap<V> {
+    private static final float LOAD_FACTOR = 0.75f;
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int maxFill;
+    private int size = 0;
+
+    public LongHashMap() {
+        this(16);
+    }
+
+    public LongHashMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR <= expectedSize) capacity <<= 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Creates a copy of another map.
+     *
+     * @param other The map to copy the entries.
+     */
+    public LongHashMap(@NotNull LongHashMap<V> other) {
+        keys = other.keys.clone();
+        values = other.values.clone();
+        mask = other.mask;
+        maxFill = other.maxFill;
+        size = other.size;
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        maxFill = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int indexOf(long key) {
+        int index = mix(key) & mask;
+        while (values[index] != null) {
+            if (keys[index] == key) return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public @Nullable V get(long key) {
+        int index = indexOf(key);
+        return index == -1 ? null : (V) values[index];
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) != -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public @Nullable V put(long key, @NotNull V value) {
+        Objects.requireNonNull(value, "value");
+        int index = mix(key) & mask;
+
+        while (values[index] != null) {
+            if (keys[index] == key) {
+                V previous = (V) values[index];
+                values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        if (++size > maxFill) rehash(keys.length << 1);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public @Nullable V remove(long key) {
+        int index = indexOf(key);
+        if (index == -1) return null;
+        V previous = (V) values[index];
+        shiftKeys(index);
+        size--;
+        return previous;
+    }
+
+    /**
+     * Closes the gap left by a removed entry, moving back the entries of the same probe sequence.
+     */
+    private void shiftKeys(int position) {
+        int last;
+        int slot;
+
+        while (true) {
+            position = ((last = position) + 1) & mask;
+            while (true) {
+                if (values[position] == null) {
+                    values[last] = null;
+                    return;
+                }
+                slot = mix(keys[position]) & mask;
+                if (last <= position ? last >= slot || slot > position : last >= slot && slot > position) break;
+                position = (position + 1) & mask;
+            }
+            keys[last] = keys[position];
+            values[last] = values[position];
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            Object value = oldValues[i];
+            if (value == null) continue;
+            int index = mix(oldKeys[i]) & mask;
+            while (values[index] != null) index = (index + 1) & mask;
+            keys[index] = oldKeys[i];
+            values[index] = value;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Performs the action for each entry of this map. The map must not be modified while iterating.
+     *
+     * @param consumer The action to perform.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(@NotNull EntryConsumer<V> consumer) {
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value != null) consumer.accept(keys[i], (V) value);
+        }
+    }
+
+    /**
+     * @param generator A function that creates an array of the given size.
+     * @return An array with the values of this map.
+     */
+    @SuppressWarnings("unchecked")
+    public @NotNull V[] valuesToArray(@NotNull IntFunction<V[]> generator) {
+        V[] array = generator.apply(size);
+        int index = 0;
+        for (Object value : values) {
+            if (value != null) array[index++] = (V) value;
+        }
+        return array;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer<V> {
+        void accept(long key, @NotNull V value);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A message parsed once into literal segments, placeholder slots and line breaks, so it can be rendered in a single
+ * pass instead of a chain of {@link String#replace(CharSequence, CharSequence)} and
+ * {@link SilkTouchPlusUtil#separateLines(String)}.
+ * <p>
+ * Arguments are given in the same order as the placeholders the template was compiled with. Placeholders without an
+ * argument, or with a null argument, are kept as they are.
+ */
+public final class MessageTemplate {
+    private static final @NotNull String LINE_BREAK = "<line>";
+    private static final int LITERAL = -1;
+    private static final int LINE = -2;
+    /**
+     * The cache is dropped when it gets bigger than this, in case it's being used with arguments that vary a lot.
+     */
+    private static final int MAX_CACHED = 256;
+    private static final @NotNull ThreadLocal<StringBuilder> builder = ThreadLocal.withInitial(StringBuilder::new);
+    private final @NotNull String[] placeholders;
+    private final @NotNull int[] tokens;
+    private final @NotNull String[] literals;
+    private final @NotNull ConcurrentHashMap<List<String>, String> cache = new ConcurrentHashMap<>();
+    private final @NotNull ConcurrentHashMap<List<String>, String[]> linesCache = new ConcurrentHashMap<>();
+
+    private MessageTemplate(@NotNull String[] placeholders, @NotNull int[] tokens, @NotNull String[] literals) {
+        this.placeholders = placeholders;
+        this.tokens = tokens;
+        this.literals = literals;
+    }
+
+    /**
+     * Parses the text into a template.
+     *
+     * @param text         The text with placeholders and {@literal <line>} breaks.
+     * @param placeholders The placeholders in the text, in the order their arguments will be given.
+     * @return The compiled template.
+     */
+    public static @NotNull MessageTemplate compile(@NotNull String text, @NotNull String... placeholders) {
+        ArrayList<String> literals = new ArrayList<>();
+        int[] tokens = new int[8];
+        int tokenCount = 0;
+        int literalStart = 0;
+        int i = text.indexOf('<');
+
+        while (i != -1) {
+            int token = LITERAL;
+            int length = 0;
+
+            if (text.startsWith(LINE_BREAK, i)) {
+                token = LINE;
+                length = LINE_BREAK.length();
+            } else {
+                for (int p = 0; p < placeholders.length; p++) {
+                    if (text.startsWith(placeholders[p], i)) {
+                        token = p;
+                        length = placeholders[p].length();
+                        break;
+                    }
+                }
+            }
+
+            if (length == 0) {
+                i = text.indexOf('<', i + 1);
+                continue;
+            }
+            if (tokenCount + 2 > tokens.length) tokens = Arrays.copyOf(tokens, tokens.length * 2);
+            if (i > literalStart) {
+                tokens[tokenCount++] = LITERAL;
+                literals.add(text.substring(literalStart, i));
+            }
+            tokens[tokenCount++] = token;
+            literals.add(null);
+            literalStart = i + length;
+            i = text.indexOf('<', literalStart);
+        }
+        if (literalStart < text.length()) {
+            if (tokenCount + 1 > tokens.length) tokens = Arrays.copyOf(tokens, tokens.length + 1);
+            tokens[tokenCount++] = LITERAL;
+            literals.add(text.substring(literalStart));
+        }
+
+        return new MessageTemplate(placeholders.clone(), Arrays.copyOf(tokens, tokenCount), literals.toArray(new String[0]));
+    }
+
+    /**
+     * Renders the template into a single string, keeping line breaks as {@literal <line>}.
+     *
+     * @param args The values of the placeholders.
+     * @return The rendered text.
+     */
+    public @NotNull String format(@NotNull String... args) {
+        StringBuilder text = builder.get();
+        text.setLength(0);
+
+        for (int i = 0; i < tokens.length; i++) {
+            append(text, i, args);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Renders the template split into lines. Trailing empty lines are dropped, like
+     * {@link SilkTouchPlusUtil#separateLines(String)} does.
+     *
+     * @param args The values of the placeholders.
+     * @return The rendered lines, empty if the template is empty.
+     */
+    public @NotNull String[] formatLines(@NotNull String... args) {
+        if (tokens.length == 0) return new String[0];
+        StringBuilder line = builder.get();
+        line.setLength(0);
+        ArrayList<String> lines = new ArrayList<>(4);
+
+        for (int i = 0; i < tokens.length; i++) {
+            if (tokens[i] == LINE) {
+                lines.add(line.toString());
+                line.setLength(0);
+            } else {
+                append(line, i, args);
+            }
+        }
+        lines.add(line.toString());
+
+        int size = lines.size();
+        // A text without line breaks is always a line, even if empty.
+        if (size > 1) while (size > 0 && lines.get(size - 1).isEmpty()) size--;
+        return lines.subList(0, size).toArray(new String[0]);
+    }
+
+    /**
+     * Same as {@link #format(String...)}, but the result is cached. Should only be used when arguments have few
+     * possible values, like the type of an entity.
+     */
+    public @NotNull String formatCached(@NotNull String... args) {
+        if (cache.size() > MAX_CACHED) cache.clear();
+        return cache.computeIfAbsent(Arrays.asList(args), key -> format(args));
+    }
+
+    /**
+     * Same as {@link #formatLines(String...)}, but the result is cached. Should only be used when arguments have few
+     * possible values, like the type of an entity.
+     *
+     * @return The cached lines, which must not be modified.
+     */
+    public @NotNull String[] formatLinesCached(@NotNull String... args) {
+        if (linesCache.size() > MAX_CACHED) linesCache.clear();
+        return linesCache.computeIfAbsent(Arrays.asList(args), key -> formatLines(args));
+    }
+
+    private void append(@NotNull StringBuilder text, int index, @NotNull String[] args) {
+        int token = tokens[index];
+
+        if (token == LITERAL) {
+            text.append(literals[index]);
+        } else if (token == LINE) {
+            text.append(LINE_BREAK);
+        } else if (token < args.length && args[token] != null) {
+            text.append(args[token]);
+        } else {
+            text.append(placeholders[token]);
+        }
+    }
+}
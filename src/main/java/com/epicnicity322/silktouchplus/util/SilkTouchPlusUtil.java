@@ -18,10 +18,12 @@
 
 package com.epicnicity322.silktouchplus.util;
 
+import org.bukkit.block.CreatureSpawner;
 import org.jetbrains.annotations.NotNull;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.regex.Pattern;
 
 public final class SilkTouchPlusUtil {
@@ -41,8 +43,66 @@ public final class SilkTouchPlusUtil {
         return format.format(health * 100) + "%";
     }
 
+    /**
+     * Gets the block break animation stage of a spawner with this health.
+     *
+     * @param health The health of the spawner. 1.0 for max health, 0.0 for min health.
+     * @return The animation stage, from -1 for no cracks to 9 for fully cracked.
+     */
+    public static int animationStage(double health) {
+        if (health < 0.0) health = 0.0;
+        if (health > 1.0) health = 1.0;
+        return (int) (9.0 - (health * 10.0));
+    }
+
+    /**
+     * Sets a random delay between the min and max spawn delay of the spawner, like vanilla does after a spawn, and
+     * writes it to the block. Spawners whose spawn event was cancelled don't reset their delay, and try to spawn again
+     * on the next tick.
+     *
+     * @param spawner The spawner of the cancelled spawn event.
+     */
+    public static void resetDelay(@NotNull CreatureSpawner spawner) {
+        int min = spawner.getMinSpawnDelay(), max = spawner.getMaxSpawnDelay();
+        spawner.setDelay(max <= min ? min : min + ThreadLocalRandom.current().nextInt(max - min));
+        spawner.update(false, false);
+    }
+
     public static @NotNull String[] separateLines(@NotNull String string) {
         if (string.isEmpty()) return new String[0];
         return lineSpliterator.split(string);
     }
+
+    /**
+     * Packs block coordinates into a single long, using 26 bits for X and Z and 12 bits for Y.
+     *
+     * @return The packed block position.
+     */
+    public static long packBlock(int x, int y, int z) {
+        return ((long) x & 0x3FFFFFFL) << 38 | ((long) z & 0x3FFFFFFL) << 12 | ((long) y & 0xFFFL);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed >> 38);
+    }
+
+    public static int unpackY(long packed) {
+        return (int) (packed << 52 >> 52);
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed << 26 >> 38);
+    }
+
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX << 32 | ((long) chunkZ & 0xFFFFFFFFL);
+    }
+
+    public static int chunkX(long chunkKey) {
+        return (int) (chunkKey >> 32);
+    }
+
+    public static int chunkZ(long chunkKey) {
+        return (int) chunkKey;
+    }
 }
@@ -0,0 +1,171 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.util;
+
+import org.bukkit.World;
+import org.bukkit.entity.EntityType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Which mob types spawners are allowed to spawn, and how much damage spawners take for spawning them. Rules are
+ * compiled into one table per world indexed by {@link EntityType#ordinal()}, so answering a spawn is a single array
+ * lookup once the table of the world is known.
+ */
+public final class SpawnPolicy {
+    private static final @NotNull EntityType[] types = EntityType.values();
+    private final @NotNull double[] defaultDamages;
+    private final @NotNull HashMap<String, double[]> worldDamages;
+    /**
+     * The world of the last spawn and its table. Spawns come in runs from the same world, so most of them skip the
+     * lookup by world name.
+     */
+    private @Nullable World lastWorld;
+    private @NotNull double[] lastDamages;
+
+    private SpawnPolicy(@NotNull double[] defaultDamages, @NotNull HashMap<String, double[]> worldDamages) {
+        this.defaultDamages = defaultDamages;
+        this.worldDamages = worldDamages;
+        this.lastDamages = defaultDamages;
+    }
+
+    /**
+     * Whether the damage returned by {@link #getSpawnDamage(World, EntityType)} means the spawn is denied.
+     */
+    public static boolean isDenied(double spawnDamage) {
+        return Double.isNaN(spawnDamage);
+    }
+
+    /**
+     * Gets the damage a spawner in this world takes for spawning this type. Must be called on the main thread.
+     *
+     * @param world The world of the spawner.
+     * @param type  The type being spawned.
+     * @return The spawn damage, or {@link Double#NaN} if this type is not allowed to spawn in this world.
+     * @see #isDenied(double)
+     */
+    public double getSpawnDamage(@NotNull World world, @NotNull EntityType type) {
+        if (worldDamages.isEmpty()) return defaultDamages[type.ordinal()];
+        if (world != lastWorld) {
+            lastDamages = worldDamages.getOrDefault(world.getName(), defaultDamages);
+            lastWorld = world;
+        }
+        return lastDamages[type.ordinal()];
+    }
+
+    public static final class Builder {
+        private final @NotNull Rules defaults = new Rules();
+        private final @NotNull HashMap<String, Rules> worlds = new HashMap<>();
+
+        public Builder() {
+            defaults.spawnDamage = 0.0005;
+        }
+
+        /**
+         * @return The rules applied to worlds without overrides.
+         */
+        public @NotNull Rules defaults() {
+            return defaults;
+        }
+
+        /**
+         * @return The overrides of this world. Rules not set are inherited from {@link #defaults()}.
+         */
+        public @NotNull Rules world(@NotNull String worldName) {
+            return worlds.computeIfAbsent(worldName, k -> new Rules());
+        }
+
+        public @NotNull SpawnPolicy build() {
+            double[] defaultDamages = compile(null);
+            HashMap<String, double[]> worldDamages = new HashMap<>((int) (worlds.size() / 0.75f) + 1);
+            worlds.forEach((name, rules) -> worldDamages.put(name, compile(rules)));
+            return new SpawnPolicy(defaultDamages, worldDamages);
+        }
+
+        private @NotNull double[] compile(@Nullable Rules overrides) {
+            EnumSet<EntityType> whitelist = defaults.whitelist;
+            EnumSet<EntityType> blacklist = defaults.blacklist;
+            double spawnDamage = defaults.spawnDamage;
+            EnumMap<EntityType, Double> typeDamages = new EnumMap<>(defaults.typeDamages);
+
+            if (overrides != null) {
+                if (overrides.whitelist != null) whitelist = overrides.whitelist;
+                if (overrides.blacklist != null) blacklist = overrides.blacklist;
+                if (!Double.isNaN(overrides.spawnDamage)) spawnDamage = overrides.spawnDamage;
+                typeDamages.putAll(overrides.typeDamages);
+            }
+
+            double[] damages = new double[types.length];
+
+            for (EntityType type : types) {
+                boolean allowed = (whitelist == null || whitelist.isEmpty() || whitelist.contains(type))
+                        && (blacklist == null || !blacklist.contains(type));
+                damages[type.ordinal()] = allowed ? typeDamages.getOrDefault(type, spawnDamage) : Double.NaN;
+            }
+            return damages;
+        }
+    }
+
+    public static final class Rules {
+        private final @NotNull EnumMap<EntityType, Double> typeDamages = new EnumMap<>(EntityType.class);
+        private @Nullable EnumSet<EntityType> whitelist;
+        private @Nullable EnumSet<EntityType> blacklist;
+        private double spawnDamage = Double.NaN;
+
+        private Rules() {
+        }
+
+        /**
+         * @param whitelist The only types allowed to spawn. An empty whitelist allows every type.
+         */
+        public @NotNull Rules setWhitelist(@NotNull Collection<EntityType> whitelist) {
+            this.whitelist = whitelist.isEmpty() ? EnumSet.noneOf(EntityType.class) : EnumSet.copyOf(whitelist);
+            return this;
+        }
+
+        /**
+         * @param blacklist Types that are never allowed to spawn, even if whitelisted.
+         */
+        public @NotNull Rules setBlacklist(@NotNull Collection<EntityType> blacklist) {
+            this.blacklist = blacklist.isEmpty() ? EnumSet.noneOf(EntityType.class) : EnumSet.copyOf(blacklist);
+            return this;
+        }
+
+        public @NotNull Rules setSpawnDamage(double spawnDamage) {
+            this.spawnDamage = spawnDamage;
+            return this;
+        }
+
+        public @NotNull Rules setSpawnDamage(@NotNull EntityType type, double spawnDamage) {
+            typeDamages.put(type, spawnDamage);
+            return this;
+        }
+
+        public @NotNull Rules setSpawnDamages(@NotNull Map<EntityType, Double> spawnDamages) {
+            typeDamages.putAll(spawnDamages);
+            return this;
+        }
+    }
+}
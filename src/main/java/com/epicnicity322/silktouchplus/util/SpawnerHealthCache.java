@@ -0,0 +1,270 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.CreatureSpawner;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Write-behind cache of spawner health and stack size. While a spawner's chunk is loaded the cached value is the source of truth, and
+ * they're only written to the spawner's persistent data container when the chunk unloads, the world saves or the plugin
+ * disables.
+ * <p>
+ * Spawn damage is queued and applied once per tick by {@link #applyPendingDamage(ObjDoubleConsumer)}, which only
+ * reports the spawners whose break animation stage or displayed health percentage changed.
+ * <p>
+ * The health of a stacked spawner is the average health of the spawners in the stack, so spawning one mob per spawner
+ * takes the same damage as a single spawner spawning one mob.
+ */
+public final class SpawnerHealthCache {
+    private final @NotNull NamespacedKey healthKey;
+    private final @NotNull NamespacedKey stackKey;
+    private final @NotNull BlockMap<Entry> entries = new BlockMap<>();
+    private final @NotNull ArrayList<Entry> pending = new ArrayList<>();
+
+    public SpawnerHealthCache(@NotNull NamespacedKey healthKey, @NotNull NamespacedKey stackKey) {
+        this.healthKey = healthKey;
+        this.stackKey = stackKey;
+    }
+
+    private @NotNull Entry entry(@NotNull CreatureSpawner spawner) {
+        World world = spawner.getWorld();
+        int x = spawner.getX(), y = spawner.getY(), z = spawner.getZ();
+        Entry entry = entries.get(world, x, y, z);
+
+        if (entry == null) {
+            PersistentDataContainer container = spawner.getPersistentDataContainer();
+            entry = new Entry(container.getOrDefault(healthKey, PersistentDataType.DOUBLE, 1.0),
+                    container.getOrDefault(stackKey, PersistentDataType.INTEGER, 1));
+            entries.put(world, x, y, z, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Gets the health of the spawner, reading it from the spawner's persistent data container if it's not cached yet.
+     *
+     * @param spawner The spawner to get the health.
+     * @return The current health of the spawner.
+     */
+    public double getHealth(@NotNull CreatureSpawner spawner) {
+        Entry entry = entry(spawner);
+        return Math.max(entry.health - entry.pendingDamage, 0.0);
+    }
+
+    /**
+     * Queues damage to the spawner, to be applied in the next {@link #applyPendingDamage(ObjDoubleConsumer)}.
+     *
+     * @param spawner The spawner that spawned a mob.
+     * @param damage  The damage to take.
+     * @return False if the spawner has no health left, and the damage was not queued.
+     */
+    public boolean damage(@NotNull CreatureSpawner spawner, double damage) {
+        Entry entry = entry(spawner);
+        if (entry.health - entry.pendingDamage <= 0.0) return false;
+        if (entry.spawner == null) {
+            entry.spawner = spawner;
+            pending.add(entry);
+        }
+        entry.pendingDamage += damage;
+        return true;
+    }
+
+    /**
+     * Applies all damage queued since the last call. The consumer is only called for spawners whose break animation
+     * stage or formatted health changed.
+     *
+     * @param changeConsumer The consumer of the spawners that visibly changed, with their new health.
+     * @see SilkTouchPlusUtil#animationStage(double)
+     * @see SilkTouchPlusUtil#formatHealth(double)
+     */
+    public void applyPendingDamage(@NotNull ObjDoubleConsumer<CreatureSpawner> changeConsumer) {
+        if (pending.isEmpty()) return;
+
+        for (Entry entry : pending) {
+            CreatureSpawner spawner = entry.spawner;
+            entry.spawner = null;
+            if (entry.removed || spawner == null) continue;
+
+            double health = entry.applyPending();
+            int stage = SilkTouchPlusUtil.animationStage(health);
+            String formatted = SilkTouchPlusUtil.formatHealth(health);
+
+            if (stage != entry.shownStage || !formatted.equals(entry.shownHealth)) {
+                entry.shownStage = stage;
+                entry.shownHealth = formatted;
+                changeConsumer.accept(spawner, health);
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * Sets the health of the spawner in cache. The health is persisted later, when the spawner is flushed.
+     *
+     * @param spawner The spawner to set the health.
+     * @param health  The new health of the spawner.
+     */
+    public void setHealth(@NotNull CreatureSpawner spawner, double health) {
+        Entry entry = entry(spawner);
+        entry.health = health;
+        entry.pendingDamage = 0.0;
+        entry.dirty = true;
+    }
+
+    /**
+     * Gets how many spawners are stacked in this spawner block.
+     *
+     * @param spawner The spawner to get the stack size.
+     * @return The stack size, 1 if the spawner is not stacked.
+     */
+    public int getStack(@NotNull CreatureSpawner spawner) {
+        return entry(spawner).stack;
+    }
+
+    /**
+     * Sets the stack size of the spawner in cache. The stack size is persisted later, when the spawner is flushed.
+     *
+     * @param spawner The spawner to set the stack size.
+     * @param stack   The new stack size.
+     */
+    public void setStack(@NotNull CreatureSpawner spawner, int stack) {
+        Entry entry = entry(spawner);
+        entry.stack = stack;
+        entry.dirty = true;
+    }
+
+    /**
+     * Removes the spawner in this position from cache without writing its health. Used when the spawner was broken.
+     */
+    public void remove(@NotNull World world, int x, int y, int z) {
+        Entry entry = entries.remove(world, x, y, z);
+        if (entry != null) entry.removed = true;
+    }
+
+    /**
+     * Writes the changed health of every spawner in the chunk and removes them from cache.
+     *
+     * @param chunk The chunk being unloaded.
+     */
+    public void flushChunk(@NotNull Chunk chunk) {
+        LongHashMap<Entry> removed = entries.removeChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        if (removed == null) return;
+        World world = chunk.getWorld();
+        removed.forEach((block, entry) -> {
+            entry.removed = true;
+            entry.applyPending();
+            if (entry.dirty) write(world, block, entry);
+        });
+    }
+
+    /**
+     * Writes the changed health of every spawner in the world, keeping them cached.
+     *
+     * @param world The world being saved.
+     */
+    public void flushWorld(@NotNull World world) {
+        LongHashMap<LongHashMap<Entry>> chunks = entries.getWorld(world);
+        if (chunks == null) return;
+        chunks.forEach((chunkKey, chunk) -> chunk.forEach((block, entry) -> {
+            entry.applyPending();
+            if (entry.dirty) write(world, block, entry);
+        }));
+    }
+
+    /**
+     * Writes the changed health of every spawner in the world and removes them from cache.
+     *
+     * @param world The world being unloaded.
+     */
+    public void unloadWorld(@NotNull World world) {
+        LongHashMap<LongHashMap<Entry>> chunks = entries.removeWorld(world);
+        if (chunks == null) return;
+        chunks.forEach((chunkKey, chunk) -> chunk.forEach((block, entry) -> {
+            entry.removed = true;
+            entry.applyPending();
+            if (entry.dirty) write(world, block, entry);
+        }));
+    }
+
+    /**
+     * Writes the changed health of every cached spawner and clears the cache.
+     */
+    public void flushAll() {
+        entries.forEach((worldId, block, entry) -> {
+            entry.applyPending();
+            if (!entry.dirty) return;
+            World world = Bukkit.getWorld(worldId);
+            if (world != null) write(world, block, entry);
+        });
+        entries.clear();
+        pending.clear();
+    }
+
+    private void write(@NotNull World world, long block, @NotNull Entry entry) {
+        write(world, SilkTouchPlusUtil.unpackX(block), SilkTouchPlusUtil.unpackY(block), SilkTouchPlusUtil.unpackZ(block), entry);
+    }
+
+    private void write(@NotNull World world, int x, int y, int z, @NotNull Entry entry) {
+        BlockState state = world.getBlockAt(x, y, z).getState();
+        entry.dirty = false;
+        if (!(state instanceof CreatureSpawner)) return;
+        PersistentDataContainer container = ((CreatureSpawner) state).getPersistentDataContainer();
+        container.set(healthKey, PersistentDataType.DOUBLE, entry.health);
+        if (entry.stack > 1) container.set(stackKey, PersistentDataType.INTEGER, entry.stack);
+        else container.remove(stackKey);
+        state.update(false, false);
+    }
+
+    private static final class Entry {
+        private double health;
+        private double pendingDamage = 0.0;
+        private int stack;
+        private boolean dirty = false;
+        private boolean removed = false;
+        private @Nullable CreatureSpawner spawner;
+        private int shownStage = -1;
+        private @Nullable String shownHealth;
+
+        private Entry(double health, int stack) {
+            this.health = health;
+            this.stack = stack;
+        }
+
+        private double applyPending() {
+            if (pendingDamage != 0.0) {
+                health = Math.max(health - pendingDamage, 0.0);
+                pendingDamage = 0.0;
+                dirty = true;
+            }
+            return health;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.util;
+
+import com.epicnicity322.silktouchplus.SilkTouchPlus;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.entity.EntityType;
+import org.bukkit.inventory.ItemFlag;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates spawner items from a prototype built once per entity type on {@link #reload(Material, boolean, int)}, so
+ * only the health dependent parts are set on each item.
+ */
+public final class SpawnerItemFactory {
+    private final @NotNull NamespacedKey typeKey;
+    private final @NotNull NamespacedKey healthKey;
+    private final @NotNull ConcurrentHashMap<Long, ItemStack> cache = new ConcurrentHashMap<>();
+    private volatile @NotNull EnumMap<EntityType, ItemStack> prototypes = new EnumMap<>(EntityType.class);
+    private volatile int healthBuckets = 0;
+
+    public SpawnerItemFactory(@NotNull NamespacedKey typeKey, @NotNull NamespacedKey healthKey) {
+        this.typeKey = typeKey;
+        this.healthKey = healthKey;
+    }
+
+    /**
+     * Builds the prototypes of every entity type again, and drops the cached items. Must be called after the language
+     * templates are compiled.
+     *
+     * @param material      The material of spawner items, which falls back to {@link Material#SPAWNER} if it has no
+     *                      item meta.
+     * @param glowing       Whether spawner items should glow.
+     * @param healthBuckets The amount of parts health is rounded to so items can be cached, or 0 to not cache items.
+     */
+    public void reload(@NotNull Material material, boolean glowing, int healthBuckets) {
+        if (new ItemStack(material).getItemMeta() == null) material = Material.SPAWNER;
+        EnumMap<EntityType, ItemStack> prototypes = new EnumMap<>(EntityType.class);
+        MessageTemplate displayName = SilkTouchPlus.getTemplate("Drop.Spawner Item.Display Name");
+
+        for (EntityType type : EntityType.values()) {
+            ItemStack item = new ItemStack(material);
+            ItemMeta meta = item.getItemMeta();
+            if (meta == null) continue;
+
+            meta.getPersistentDataContainer().set(typeKey, PersistentDataType.STRING, type.name());
+            if (glowing) meta.addEnchant(Enchantment.DURABILITY, 1, true);
+            meta.setDisplayName(displayName.format(type.name()));
+            meta.addItemFlags(ItemFlag.values());
+            item.setItemMeta(meta);
+            prototypes.put(type, item);
+        }
+
+        this.prototypes = prototypes;
+        this.healthBuckets = Math.max(healthBuckets, 0);
+        cache.clear();
+    }
+
+    /**
+     * Creates a spawner item. If health buckets are set, the health is rounded to the nearest bucket.
+     *
+     * @param type   The type of the spawner.
+     * @param health The health of the spawner.
+     * @return A new spawner item.
+     */
+    public @NotNull ItemStack create(@NotNull EntityType type, double health) {
+        int healthBuckets = this.healthBuckets;
+        if (healthBuckets == 0) return build(type, health);
+
+        long bucket = Math.round(health * healthBuckets);
+        double roundedHealth = bucket / (double) healthBuckets;
+        return cache.computeIfAbsent(((long) type.ordinal() << 32) | (bucket & 0xFFFFFFFFL), key -> build(type, roundedHealth)).clone();
+    }
+
+    private @NotNull ItemStack build(@NotNull EntityType type, double health) {
+        ItemStack prototype = prototypes.get(type);
+        if (prototype == null) throw new IllegalStateException("Spawner items were not loaded yet.");
+        ItemStack item = prototype.clone();
+        ItemMeta meta = item.getItemMeta();
+        if (meta == null) return item;
+
+        meta.getPersistentDataContainer().set(healthKey, PersistentDataType.DOUBLE, health);
+        meta.setLore(Arrays.asList(SilkTouchPlus.getTemplate("Drop.Spawner Item.Lore").formatLines(type.name(),
+                Double.toString(health), SilkTouchPlusUtil.formatHealth(health))));
+        item.setItemMeta(meta);
+        return item;
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.util;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers which loaded entities were spawned by spawners, and the type of the spawner, by their entity IDs. This
+ * way spawned mobs don't need a persistent data tag, which would be written into the entity and saved with the chunk.
+ * Mobs are only tagged when their chunk unloads while they're still alive, and untagged once they're loaded again.
+ * <p>
+ * Each mob also has a stack size, which is how many mobs a stacked mob stands for. Stacked mobs don't despawn, so they
+ * never expire, and are only forgotten when they die or unload.
+ * <p>
+ * Entities that are removed without dying are forgotten once their time to live expires. Must be used only on the main
+ * thread.
+ */
+public final class SpawnerMobRegistry {
+    private static final float LOAD_FACTOR = 0.75f;
+    private final @NotNull NamespacedKey persistentKey;
+    private int[] ids;
+    private EntityType[] types;
+    private int[] stacks;
+    private long[] expiries;
+    private int mask;
+    private int maxFill;
+    private int size = 0;
+    private long timeToLive = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * @param persistentKey The key used to tag mobs that are unloaded while still alive.
+     */
+    public SpawnerMobRegistry(@NotNull NamespacedKey persistentKey) {
+        this.persistentKey = persistentKey;
+        allocate(64);
+    }
+
+    private static int mix(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void allocate(int capacity) {
+        ids = new int[capacity];
+        types = new EntityType[capacity];
+        stacks = new int[capacity];
+        expiries = new long[capacity];
+        mask = capacity - 1;
+        maxFill = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * @param timeToLive For how many milliseconds a mob is remembered after it was spawned or loaded.
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Remembers that the entity was spawned by a spawner.
+     *
+     * @param entity      The spawned entity.
+     * @param spawnerType The type of the spawner that spawned it.
+     */
+    public void register(@NotNull Entity entity, @NotNull EntityType spawnerType) {
+        register(entity.getEntityId(), spawnerType, 1);
+    }
+
+    private void register(int id, @NotNull EntityType spawnerType, int stack) {
+        long expiry = System.currentTimeMillis() + timeToLive;
+        int index = mix(id) & mask;
+
+        while (types[index] != null) {
+            if (ids[index] == id) {
+                types[index] = spawnerType;
+                stacks[index] = stack;
+                expiries[index] = expiry;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+
+        ids[index] = id;
+        types[index] = spawnerType;
+        stacks[index] = stack;
+        expiries[index] = expiry;
+        // Expired entries are dropped when the table is rebuilt, so it only grows if they're not enough.
+        if (++size > maxFill) {
+            rehash(ids.length);
+            if (size > maxFill >> 1) rehash(ids.length << 1);
+        }
+    }
+
+    /**
+     * @param entity The entity to get the type of the spawner.
+     * @return The type of the spawner that spawned the entity, or null if it was not spawned by a spawner.
+     */
+    public @Nullable EntityType getSpawnerType(@NotNull Entity entity) {
+        int index = indexOf(entity.getEntityId());
+        return index == -1 || isExpired(index, System.currentTimeMillis()) ? null : types[index];
+    }
+
+    /**
+     * @param entity The entity to get the stack size.
+     * @return How many mobs the entity stands for, or 0 if it was not spawned by a spawner.
+     */
+    public int getStack(@NotNull Entity entity) {
+        int index = indexOf(entity.getEntityId());
+        return index == -1 || isExpired(index, System.currentTimeMillis()) ? 0 : stacks[index];
+    }
+
+    /**
+     * Sets how many mobs the entity stands for, and remembers it for longer. Does nothing if the entity was not
+     * spawned by a spawner.
+     *
+     * @param entity The entity to set the stack size.
+     * @param stack  The new stack size.
+     */
+    public void setStack(@NotNull Entity entity, int stack) {
+        int index = indexOf(entity.getEntityId());
+        if (index == -1) return;
+        stacks[index] = stack;
+        expiries[index] = System.currentTimeMillis() + timeToLive;
+    }
+
+    /**
+     * Forgets the entity, usually because it died.
+     *
+     * @param entity The entity to forget.
+     * @return The type of the spawner that spawned the entity, or null if it was not spawned by a spawner.
+     */
+    public @Nullable EntityType remove(@NotNull Entity entity) {
+        int index = indexOf(entity.getEntityId());
+
+        if (index == -1) {
+            // Mobs that were tagged but loaded without being seen, like the ones loaded before the plugin enabled.
+            PersistentDataContainer container = entity.getPersistentDataContainer();
+            return container.has(persistentKey, PersistentDataType.INTEGER) ? entity.getType() : null;
+        }
+
+        EntityType type = types[index];
+        boolean expired = isExpired(index, System.currentTimeMillis());
+        removeAt(index);
+        return expired ? null : type;
+    }
+
+    /**
+     * Tags the remembered entities, so they're still known as spawner mobs after they're loaded again, and forgets
+     * them. Should be called when the entities are about to be unloaded.
+     *
+     * @param entities The entities being unloaded.
+     */
+    public void persist(@NotNull Collection<? extends Entity> entities) {
+        if (size == 0) return;
+        long now = System.currentTimeMillis();
+
+        for (Entity entity : entities) {
+            int index = indexOf(entity.getEntityId());
+            if (index == -1) continue;
+            if (!isExpired(index, now)) {
+                entity.getPersistentDataContainer().set(persistentKey, PersistentDataType.INTEGER, stacks[index]);
+            }
+            removeAt(index);
+        }
+    }
+
+    /**
+     * Remembers the tagged entities again and removes their tags. Should be called when the entities are loaded.
+     *
+     * @param entities The entities being loaded.
+     */
+    public void restore(@NotNull Collection<? extends Entity> entities) {
+        for (Entity entity : entities) {
+            PersistentDataContainer container = entity.getPersistentDataContainer();
+            Integer stack = container.get(persistentKey, PersistentDataType.INTEGER);
+            if (stack == null) continue;
+            container.remove(persistentKey);
+            register(entity.getEntityId(), entity.getType(), Math.max(stack, 1));
+        }
+    }
+
+    private boolean isExpired(int index, long now) {
+        return stacks[index] <= 1 && expiries[index] < now;
+    }
+
+    private int indexOf(int id) {
+        int index = mix(id) & mask;
+        while (types[index] != null) {
+            if (ids[index] == id) return index;
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the entry at the index, closing the gap by moving back the entries of the same probe sequence.
+     */
+    private void removeAt(int position) {
+        size--;
+        int last;
+        int slot;
+
+        while (true) {
+            position = ((last = position) + 1) & mask;
+            while (true) {
+                if (types[position] == null) {
+                    types[last] = null;
+                    return;
+                }
+                slot = mix(ids[position]) & mask;
+                if (last <= position ? last >= slot || slot > position : last >= slot && slot > position) break;
+                position = (position + 1) & mask;
+            }
+            ids[last] = ids[position];
+            types[last] = types[position];
+            stacks[last] = stacks[position];
+            expiries[last] = expiries[position];
+        }
+    }
+
+    /**
+     * Rebuilds the table with the given capacity, leaving out the expired entries.
+     */
+    private void rehash(int capacity) {
+        int[] oldIds = ids;
+        EntityType[] oldTypes = types;
+        int[] oldStacks = stacks;
+        long[] oldExpiries = expiries;
+        long now = System.currentTimeMillis();
+
+        allocate(capacity);
+        size = 0;
+
+        for (int i = 0; i < oldIds.length; i++) {
+            EntityType type = oldTypes[i];
+            if (type == null || (oldStacks[i] <= 1 && oldExpiries[i] < now)) continue;
+            int index = mix(oldIds[i]) & mask;
+            while (types[index] != null) index = (index + 1) & mask;
+            ids[index] = oldIds[i];
+            types[index] = type;
+            stacks[index] = oldStacks[i];
+            expiries[index] = oldExpiries[i];
+            size++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(types, null);
+        size = 0;
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * SilkTouchPlus - Minecraft Spigot plugin that allows spawners to be obtained with Silk Touch II.
+ * Copyright (C) 2023  Christiano Rangel
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.epicnicity322.silktouchplus.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.CreatureSpawner;
+import org.bukkit.entity.ExperienceOrb;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.util.io.BukkitObjectInputStream;
+import org.bukkit.util.io.BukkitObjectOutputStream;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind storage of the loot produced by virtual spawns, kept in each spawner until a player collects it. Like
+ * {@link SpawnerHealthCache}, a spawner's loot is read from its persistent data container when first used, and only
+ * written back when the chunk unloads, the world saves or the plugin disables. Must be used only on the main thread.
+ */
+public final class VirtualLootBuffer {
+    private final @NotNull NamespacedKey itemsKey;
+    private final @NotNull NamespacedKey experienceKey;
+    private final @NotNull Logger logger;
+    private final @NotNull BlockMap<Buffer> buffers = new BlockMap<>();
+    private int maxItems = 1728;
+
+    public VirtualLootBuffer(@NotNull NamespacedKey itemsKey, @NotNull NamespacedKey experienceKey, @NotNull Logger logger) {
+        this.itemsKey = itemsKey;
+        this.experienceKey = experienceKey;
+        this.logger = logger;
+    }
+
+    /**
+     * @param maxItems How many items each spawner can keep. Loot beyond this amount is discarded.
+     */
+    public void setMaxItems(int maxItems) {
+        this.maxItems = maxItems;
+    }
+
+    private @NotNull Buffer buffer(@NotNull CreatureSpawner spawner) {
+        World world = spawner.getWorld();
+        int x = spawner.getX(), y = spawner.getY(), z = spawner.getZ();
+        Buffer buffer = buffers.get(world, x, y, z);
+
+        if (buffer == null) {
+            buffer = read(spawner);
+            buffers.put(world, x, y, z, buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Adds loot to the spawner's buffer. Items that don't fit in the buffer are discarded.
+     *
+     * @param spawner    The spawner that produced the loot.
+     * @param items      The items to add.
+     * @param experience The experience to add.
+     */
+    public void deposit(@NotNull CreatureSpawner spawner, @NotNull Collection<ItemStack> items, int experience) {
+        Buffer buffer = buffer(spawner);
+        if (experience > 0) {
+            buffer.experience = (int) Math.min((long) buffer.experience + experience, Integer.MAX_VALUE);
+            buffer.dirty = true;
+        }
+
+        for (ItemStack item : items) {
+            if (buffer.count >= maxItems) return;
+            int amount = Math.min(item.getAmount(), maxItems - buffer.count);
+            if (amount <= 0) continue;
+            buffer.count += amount;
+            buffer.dirty = true;
+
+            // Filling the stacks of the same item first, so the buffer has as few stacks as possible.
+            for (ItemStack stack : buffer.items) {
+                int space = stack.getMaxStackSize() - stack.getAmount();
+                if (space <= 0 || !stack.isSimilar(item)) continue;
+                int added = Math.min(space, amount);
+                stack.setAmount(stack.getAmount() + added);
+                if ((amount -= added) == 0) break;
+            }
+            while (amount > 0) {
+                ItemStack stack = item.clone();
+                stack.setAmount(Math.min(amount, item.getMaxStackSize()));
+                amount -= stack.getAmount();
+                buffer.items.add(stack);
+            }
+        }
+    }
+
+    /**
+     * Gives the loot kept in the spawner to the player. Items that don't fit in the player's inventory are kept in the
+     * spawner.
+     *
+     * @param spawner The spawner to collect the loot.
+     * @param player  The player collecting the loot.
+     * @return Whether the spawner had any loot.
+     */
+    public boolean collect(@NotNull CreatureSpawner spawner, @NotNull Player player) {
+        Buffer buffer = buffer(spawner);
+        if (buffer.items.isEmpty() && buffer.experience == 0) return false;
+
+        if (buffer.experience != 0) {
+            player.giveExp(buffer.experience);
+            buffer.experience = 0;
+        }
+        if (!buffer.items.isEmpty()) {
+            Collection<ItemStack> left = player.getInventory().addItem(buffer.items.toArray(new ItemStack[0])).values();
+            buffer.items.clear();
+            buffer.items.addAll(left);
+            buffer.count = 0;
+            for (ItemStack item : left) buffer.count += item.getAmount();
+        }
+        buffer.dirty = true;
+        return true;
+    }
+
+    /**
+     * Drops the loot kept in the spawner and removes it from cache. Used when the spawner is broken.
+     *
+     * @param spawner The spawner being broken.
+     */
+    public void drop(@NotNull CreatureSpawner spawner) {
+        Buffer buffer = buffers.remove(spawner.getWorld(), spawner.getX(), spawner.getY(), spawner.getZ());
+        if (buffer == null) buffer = read(spawner);
+        if (buffer.items.isEmpty() && buffer.experience == 0) return;
+        World world = spawner.getWorld();
+        Location location = spawner.getLocation().add(0.5, 0.5, 0.5);
+
+        for (ItemStack item : buffer.items) world.dropItemNaturally(location, item);
+        int experience = buffer.experience;
+        if (experience != 0) world.spawn(location, ExperienceOrb.class, orb -> orb.setExperience(experience));
+    }
+
+    /**
+     * Removes the spawner in this position from cache without writing or dropping its loot. Used when a new spawner is
+     * placed.
+     */
+    public void remove(@NotNull World world, int x, int y, int z) {
+        buffers.remove(world, x, y, z);
+    }
+
+    /**
+     * Writes the changed loot of every spawner in the chunk and removes them from cache.
+     *
+     * @param chunk The chunk being unloaded.
+     */
+    public void flushChunk(@NotNull Chunk chunk) {
+        LongHashMap<Buffer> removed = buffers.removeChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        if (removed == null) return;
+        World world = chunk.getWorld();
+        removed.forEach((block, buffer) -> {
+            if (buffer.dirty) write(world, block, buffer);
+        });
+    }
+
+    /**
+     * Writes the changed loot of every spawner in the world, keeping them cached.
+     *
+     * @param world The world being saved.
+     */
+    public void flushWorld(@NotNull World world) {
+        LongHashMap<LongHashMap<Buffer>> chunks = buffers.getWorld(world);
+        if (chunks == null) return;
+        chunks.forEach((chunkKey, chunk) -> chunk.forEach((block, buffer) -> {
+            if (buffer.dirty) write(world, block, buffer);
+        }));
+    }
+
+    /**
+     * Writes the changed loot of every spawner in the world and removes them from cache.
+     *
+     * @param world The world being unloaded.
+     */
+    public void unloadWorld(@NotNull World world) {
+        LongHashMap<LongHashMap<Buffer>> chunks = buffers.removeWorld(world);
+        if (chunks == null) return;
+        chunks.forEach((chunkKey, chunk) -> chunk.forEach((block, buffer) -> {
+            if (buffer.dirty) write(world, block, buffer);
+        }));
+    }
+
+    /**
+     * Writes the changed loot of every cached spawner and clears the cache.
+     */
+    public void flushAll() {
+        buffers.forEach((worldId, block, buffer) -> {
+            if (!buffer.dirty) return;
+            World world = Bukkit.getWorld(worldId);
+            if (world != null) write(world, block, buffer);
+        });
+        buffers.clear();
+    }
+
+    private @NotNull Buffer read(@NotNull CreatureSpawner spawner) {
+        PersistentDataContainer container = spawner.getPersistentDataContainer();
+        Buffer buffer = new Buffer(container.getOrDefault(experienceKey, PersistentDataType.INTEGER, 0));
+        byte[] bytes = container.get(itemsKey, PersistentDataType.BYTE_ARRAY);
+        if (bytes == null) return buffer;
+
+        try (BukkitObjectInputStream in = new BukkitObjectInputStream(new ByteArrayInputStream(bytes))) {
+            for (int i = in.readInt(); i > 0; i--) {
+                ItemStack item = (ItemStack) in.readObject();
+                buffer.items.add(item);
+                buffer.count += item.getAmount();
+            }
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            logger.log(Level.WARNING, "Failed to read the loot kept in spawner at " + spawner.getLocation() + ":", e);
+        }
+        return buffer;
+    }
+
+    private void write(@NotNull World world, long block, @NotNull Buffer buffer) {
+        BlockState state = world.getBlockAt(SilkTouchPlusUtil.unpackX(block), SilkTouchPlusUtil.unpackY(block), SilkTouchPlusUtil.unpackZ(block)).getState();
+        buffer.dirty = false;
+        if (!(state instanceof CreatureSpawner)) return;
+        PersistentDataContainer container = ((CreatureSpawner) state).getPersistentDataContainer();
+
+        if (buffer.experience == 0) container.remove(experienceKey);
+        else container.set(experienceKey, PersistentDataType.INTEGER, buffer.experience);
+
+        if (buffer.items.isEmpty()) {
+            container.remove(itemsKey);
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (BukkitObjectOutputStream out = new BukkitObjectOutputStream(bytes)) {
+                out.writeInt(buffer.items.size());
+                for (ItemStack item : buffer.items) out.writeObject(item);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to write the loot kept in spawner at " + state.getLocation() + ":", e);
+                return;
+            }
+            container.set(itemsKey, PersistentDataType.BYTE_ARRAY, bytes.toByteArray());
+        }
+        state.update(false, false);
+    }
+
+    private static final class Buffer {
+        private final @NotNull ArrayList<ItemStack> items = new ArrayList<>();
+        private int count = 0;
+        private int experience;
+        private boolean dirty = false;
+
+        private Buffer(int experience) {
+            this.experience = experience;
+        }
+    }
+}